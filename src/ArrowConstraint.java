@@ -0,0 +1,57 @@
+/**
+ * The digit in the circle is the sum of the digits along the arrow
+ */
+public class ArrowConstraint extends Constraint {
+    /**
+     * @param cells the circle first, then the arrow cells
+     */
+    public ArrowConstraint(int[] cells){
+        super(cells);
+    }
+
+    public String getRule(){
+        return "arrow";
+    }
+
+    public boolean isValid(Sudoku s){
+        // An empty circle counts as the largest digit and an empty arrow cell as 1
+        boolean filled = s.getCell(myCells[0]) != 0;
+        int arrowHead = s.getCell(myCells[0])==0?s.getSize():s.getCell(myCells[0]);
+        for (int i=1; i<myCells.length; i++){
+            filled &= s.getCell(myCells[i]) != 0;
+            arrowHead -= s.getCell(myCells[i])==0?1:s.getCell(myCells[i]);
+            if (arrowHead<0){
+                return false;
+            }
+        }
+        // Once every cell is placed the sum must be exact
+        return !filled || arrowHead == 0;
+    }
+
+    public boolean propagate(Sudoku s){
+        // The circle lies between the smallest and largest sums the arrow can still make
+        int low = 0;
+        int high = 0;
+        for (int i=1; i<myCells.length; i++){
+            int mask = s.getMask(myCells[i]);
+            low += Sudoku.lowestDigit(mask);
+            high += Sudoku.highestDigit(mask);
+        }
+        int head = s.getMask(myCells[0]) & Sudoku.range(low, high);
+        if (head == 0) return false;
+        s.setMask(myCells[0], head);
+
+        // Each arrow cell makes up the circle less what the rest of the arrow can sum to
+        int headLow = Sudoku.lowestDigit(head);
+        int headHigh = Sudoku.highestDigit(head);
+        for (int i=1; i<myCells.length; i++){
+            int mask = s.getMask(myCells[i]);
+            int restLow = low - Sudoku.lowestDigit(mask);
+            int restHigh = high - Sudoku.highestDigit(mask);
+            mask &= Sudoku.range(headLow - restHigh, headHigh - restLow);
+            if (mask == 0) return false;
+            s.setMask(myCells[i], mask);
+        }
+        return true;
+    }
+}
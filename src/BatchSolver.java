@@ -0,0 +1,225 @@
+import java.io.*;
+import java.nio.*;
+import java.nio.channels.FileChannel;
+import java.nio.file.*;
+import java.util.*;
+import java.util.concurrent.*;
+
+/**
+ * Solves a file of puzzles, one 81-character line each ('1'-'9' for a digit, '0' or '.' for an
+ * empty cell), and writes one solution line per puzzle in input order. Unsolvable puzzles are
+ * written as 81 zeros.
+ *
+ * The input is memory-mapped a chunk at a time and decoded straight into int arrays; puzzles are
+ * solved in batches on a worker pool, each worker reusing one Sudoku; at most a fixed number of
+ * batches are in flight, so a slow writer or slow puzzles hold the reader back.
+ */
+public final class BatchSolver {
+    /** Puzzles per batch handed to a worker */
+    private static final int BATCH = 512;
+    /** Bytes of input mapped at once */
+    private static final long CHUNK = 64L << 20;
+    /** Bytes per output line */
+    private static final int LINE = Sudoku.CELLS+1;
+
+    private BatchSolver(){
+    }
+
+    /**
+     * Usage: BatchSolver input output [threads] [rule ...], the rules default to normal
+     */
+    public static void main(String[] args) throws IOException, InterruptedException {
+        if (args.length < 2){
+            System.err.println("Usage: BatchSolver input output [threads] [rule ...]");
+            System.exit(2);
+        }
+        int threads = Runtime.getRuntime().availableProcessors();
+        int first = 2;
+        if (args.length > 2 && args[2].matches("\\d+")){
+            threads = Integer.parseInt(args[2]);
+            first = 3;
+        }
+        Map<String, List<List<Integer>>> rules = new HashMap<>();
+        for (int i=first; i<args.length; i++) rules.put(args[i], null);
+        if (rules.isEmpty()) rules.put("normal", null);
+
+        long start = System.nanoTime();
+        long count = solve(Paths.get(args[0]), Paths.get(args[1]), ConstraintGraph.compile(rules), threads);
+        double seconds = (System.nanoTime()-start)/1e9;
+        System.err.printf("Solved %d puzzles in %.3f s (%.0f puzzles/s)%n", count, seconds, count/seconds);
+    }
+
+    /**
+     * Solve every puzzle of a file
+     * @param input file of 81-character puzzle lines
+     * @param output file to write the solution lines to
+     * @param graph the compiled 9x9 rules shared by every puzzle
+     * @param threads number of worker threads
+     * @return the number of puzzles read
+     */
+    public static long solve(Path input, Path output, ConstraintGraph graph, int threads)
+            throws IOException, InterruptedException {
+        if (graph.getSize() != Sudoku.SIZE){
+            throw new IllegalArgumentException("Batch files hold 9x9 puzzles, not " + graph.getSize() + "x" + graph.getSize());
+        }
+        ExecutorService workers = Executors.newFixedThreadPool(threads);
+        ExecutorService writerThread = Executors.newSingleThreadExecutor();
+        try (OutputStream out = new BufferedOutputStream(Files.newOutputStream(output), 1 << 20)){
+            // Batches in input order; bounded, so the reader blocks while the writer catches up
+            BlockingQueue<Future<byte[]>> pending = new ArrayBlockingQueue<>(4*threads);
+            Future<?> writer = writerThread.submit(() -> {
+                while (true){
+                    byte[] solved = pending.take().get();
+                    if (solved.length == 0) return null;
+                    out.write(solved);
+                }
+            });
+            Batcher batcher = new Batcher(graph, workers, pending, writer);
+
+            try {
+                read(input, batcher);
+                // An empty batch tells the writer the input is finished
+                batcher.enqueue(CompletableFuture.completedFuture(new byte[0]));
+                writer.get();
+                return batcher.myPuzzles;
+            }
+            catch (ExecutionException e){
+                throw new IOException("Failed to solve or write a batch", e.getCause());
+            }
+            catch (Throwable e){
+                // The writer must be done with the output before it is closed
+                writer.cancel(true);
+                writerThread.shutdownNow();
+                try {
+                    writerThread.awaitTermination(Long.MAX_VALUE, TimeUnit.NANOSECONDS);
+                }
+                catch (InterruptedException interrupted){
+                    e.addSuppressed(interrupted);
+                    Thread.currentThread().interrupt();
+                }
+                throw e;
+            }
+        }
+        finally {
+            workers.shutdownNow();
+            writerThread.shutdownNow();
+        }
+    }
+
+    /**
+     * Map the input a chunk at a time and hand every line to the batcher
+     */
+    private static void read(Path input, Batcher batcher) throws IOException, InterruptedException {
+        try (FileChannel channel = FileChannel.open(input, StandardOpenOption.READ)){
+            long size = channel.size();
+            long position = 0;
+            while (position < size){
+                long length = Math.min(CHUNK, size-position);
+                MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, position, length);
+                // Only whole lines are decoded; a partial last line waits for the next chunk
+                int end = (int) length;
+                if (position+length < size){
+                    while (end > 0 && buffer.get(end-1) != '\n') end--;
+                    if (end == 0) throw new IOException("Line " + (batcher.myLines+1) + " is longer than " + CHUNK + " bytes");
+                }
+                int lineStart = 0;
+                for (int i=0; i<end; i++){
+                    if (buffer.get(i) != '\n') continue;
+                    batcher.line(buffer, lineStart, i);
+                    lineStart = i+1;
+                }
+                if (lineStart < end) batcher.line(buffer, lineStart, end);
+                position += end;
+            }
+            batcher.flush();
+        }
+    }
+
+    /**
+     * Groups decoded puzzles into batches and queues them for the workers
+     */
+    private static final class Batcher {
+        private final ExecutorService myWorkers;
+        private final BlockingQueue<Future<byte[]>> myPending;
+        private final Future<?> myWriter;
+        private final ThreadLocal<Sudoku> mySudokus;
+        private int[] myBatch = new int[BATCH*Sudoku.CELLS];
+        private int myBatchSize = 0;
+        private long myLines = 0;
+        private long myPuzzles = 0;
+
+        Batcher(ConstraintGraph graph, ExecutorService workers, BlockingQueue<Future<byte[]>> pending, Future<?> writer){
+            myWorkers = workers;
+            myPending = pending;
+            myWriter = writer;
+            mySudokus = ThreadLocal.withInitial(() -> new Sudoku(new int[Sudoku.CELLS], graph));
+        }
+
+        /**
+         * Decode one line, without its line break; blank lines are skipped
+         */
+        void line(ByteBuffer buffer, int start, int end) throws IOException, InterruptedException {
+            myLines++;
+            if (end > start && buffer.get(end-1) == '\r') end--;
+            if (end == start) return;
+            decode(buffer, start, end, myBatch, myBatchSize*Sudoku.CELLS, myLines);
+            myBatchSize++;
+            myPuzzles++;
+            if (myBatchSize == BATCH) flush();
+        }
+
+        /**
+         * Hand the current batch to the workers
+         */
+        void flush() throws IOException, InterruptedException {
+            if (myBatchSize == 0) return;
+            enqueue(myWorkers.submit(solveBatch(myBatch, myBatchSize, mySudokus)));
+            myBatch = new int[BATCH*Sudoku.CELLS];
+            myBatchSize = 0;
+        }
+
+        /**
+         * Queue a batch for the writer, waiting for room unless the writer has stopped
+         */
+        void enqueue(Future<byte[]> batch) throws IOException, InterruptedException {
+            while (!myPending.offer(batch, 100, TimeUnit.MILLISECONDS)){
+                if (myWriter.isDone()) throw new IOException("Writer stopped before the input was finished");
+            }
+        }
+    }
+
+    /**
+     * Decode one puzzle line into cells
+     */
+    private static void decode(ByteBuffer buffer, int start, int end, int[] cells, int offset, long lineNumber)
+            throws IOException {
+        if (end-start != Sudoku.CELLS){
+            throw new IOException("Line " + lineNumber + ": expected " + Sudoku.CELLS + " cells, found " + (end-start));
+        }
+        for (int i=0; i<Sudoku.CELLS; i++){
+            byte c = buffer.get(start+i);
+            if (c == '.') c = '0';
+            if (c < '0' || c > '9') throw new IOException("Line " + lineNumber + ": unexpected '" + (char) c + "'");
+            cells[offset+i] = c-'0';
+        }
+    }
+
+    /**
+     * @return a task solving the puzzles of a batch into their output lines
+     */
+    private static Callable<byte[]> solveBatch(int[] batch, int batchSize, ThreadLocal<Sudoku> sudokus){
+        return () -> {
+            Sudoku s = sudokus.get();
+            byte[] lines = new byte[batchSize*LINE];
+            for (int p=0; p<batchSize; p++){
+                s.load(batch, p*Sudoku.CELLS);
+                boolean solved = SudokuSolver.solver(s) != null;
+                for (int i=0; i<Sudoku.CELLS; i++){
+                    lines[p*LINE+i] = (byte) (solved ? '0'+s.getCell(i) : '0');
+                }
+                lines[p*LINE+Sudoku.CELLS] = '\n';
+            }
+            return lines;
+        };
+    }
+}
@@ -0,0 +1,35 @@
+/**
+ * Lets another thread stop a solve: the search checks the token at every node and gives up with
+ * a CANCELLED result once it is cancelled
+ */
+public final class CancellationToken {
+    private final CancellationToken myParent;
+    private volatile boolean myCancelled = false;
+
+    public CancellationToken(){
+        this(null);
+    }
+
+    /**
+     * A token that is also cancelled once its parent is, so part of a solve can be stopped on its
+     * own
+     * @param parent the token whose cancellation this one follows, null for none
+     */
+    public CancellationToken(CancellationToken parent){
+        myParent = parent;
+    }
+
+    /**
+     * Ask every solve holding this token to stop
+     */
+    public void cancel(){
+        myCancelled = true;
+    }
+
+    /**
+     * @return true iff cancel() was called on this token or its parent
+     */
+    public boolean isCancelled(){
+        return myCancelled || (myParent != null && myParent.isCancelled());
+    }
+}
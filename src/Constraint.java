@@ -0,0 +1,77 @@
+import java.util.*;
+
+/**
+ * A rule that ties together a fixed list of cells, such as a thermometer or a kropki dot
+ */
+public abstract class Constraint {
+    protected final int[] myCells;
+
+    /**
+     * @param cells the cells covered by the constraint, in rule order
+     */
+    protected Constraint(int[] cells){
+        myCells = cells;
+    }
+
+    /**
+     * @return the cells covered by the constraint, in rule order
+     */
+    public int[] getCells(){
+        return myCells;
+    }
+
+    /**
+     * @return the rule key this constraint was compiled from
+     */
+    public abstract String getRule();
+
+    /**
+     * Check the placed digits of the constraint, empty cells are ignored
+     * @param s the Sudoku
+     * @return true iff the placed digits violate nothing
+     */
+    public abstract boolean isValid(Sudoku s);
+
+    /**
+     * Remove candidates that can never satisfy the constraint, whatever else is placed
+     * @param s the Sudoku
+     */
+    public void prune(Sudoku s){
+    }
+
+    /**
+     * Remove candidates ruled out by the current state of the constraint's cells
+     * @param s the Sudoku
+     * @return false iff the constraint can no longer be satisfied
+     */
+    public boolean propagate(Sudoku s){
+        return isValid(s);
+    }
+
+    /**
+     * @return true iff the constraint only compares digits for equality, so relabelling the
+     * digits of a valid grid keeps it valid
+     */
+    public boolean allowsRelabeling(){
+        return false;
+    }
+
+    /**
+     * @param cells a list of cell indices
+     * @return the cells as an array
+     */
+    static int[] toArray(List<Integer> cells){
+        int[] array = new int[cells.size()];
+        for (int i=0; i<array.length; i++){
+            array[i] = cells.get(i);
+        }
+        return array;
+    }
+
+    /**
+     * @return String representation of the constraint
+     */
+    public String toString(){
+        return getRule() + Arrays.toString(myCells);
+    }
+}
@@ -0,0 +1,357 @@
+import java.util.*;
+
+/**
+ * Rules of a Sudoku compiled once into per-cell lookups, so checks only visit what touches a cell
+ */
+public final class ConstraintGraph {
+    /** Names of every rule the compiler knows */
+    public static final Set<String> RULES = Collections.unmodifiableSet(new HashSet<>(Arrays.asList(
+            "normal", "diagonal", "disjoint", "knight", "king", "nonconsecutive", "thermo", "arrow", "palindrome",
+            "xv", "kropki", "negativekropki", "sandwich")));
+
+    private static final int[] KNIGHT_ROW = {1, 2, 2, 1, -1, -2, -2, -1};
+    private static final int[] KNIGHT_COL = {2, 1, -1, -2, -2, -1, 1, 2};
+    private static final int[] KING_ROW = {1, 1, -1, -1};
+    private static final int[] KING_COL = {1, -1, -1, 1};
+    private static final int[] ORTHOGONAL_ROW = {0, 1, 0, -1};
+    private static final int[] ORTHOGONAL_COL = {1, 0, -1, 0};
+
+    private final Map<String, List<List<Integer>>> myRules;
+    private final int mySize;
+    private final int myBoxSize;
+    private final int[][] myHouses;
+    private final int[][] myHousesOf;
+    private final int[][] myPeers;
+    private final int[][] myNeighbours;
+    private final Constraint[][] myConstraints;
+    private final Constraint[] myAllConstraints;
+
+    private ConstraintGraph(Map<String, List<List<Integer>>> rules, int size, int boxSize, int[][] houses, int[][] peers,
+                            int[][] neighbours, Constraint[][] constraints, Constraint[] allConstraints){
+        myRules = rules;
+        mySize = size;
+        myBoxSize = boxSize;
+        myHouses = houses;
+        myHousesOf = new int[size*size][];
+        int[] count = new int[size*size];
+        for (int[] house : houses){
+            for (int cell : house) count[cell]++;
+        }
+        for (int i=0; i<count.length; i++) myHousesOf[i] = new int[count[i]];
+        Arrays.fill(count, 0);
+        for (int h=0; h<houses.length; h++){
+            for (int cell : houses[h]) myHousesOf[cell][count[cell]++] = h;
+        }
+        myPeers = peers;
+        myNeighbours = neighbours;
+        myConstraints = constraints;
+        myAllConstraints = allConstraints;
+    }
+
+    /**
+     * Compile the rules of a classic 9x9 Sudoku
+     * @param rules the rules, keyed by rule name
+     * @return the compiled rules
+     */
+    public static ConstraintGraph compile(Map<String, List<List<Integer>>> rules){
+        return compile(rules, Sudoku.SIZE);
+    }
+
+    /**
+     * Compile the rules of a Sudoku of any size whose boxes are square
+     * @param rules the rules, keyed by rule name, each one of RULES
+     * @param size the number of rows, columns and digits: 4, 9, 16 or 25
+     * @return the compiled rules
+     */
+    public static ConstraintGraph compile(Map<String, List<List<Integer>>> rules, int size){
+        if (rules == null) rules = Collections.emptyMap();
+        int box = (int) Math.round(Math.sqrt(size));
+        if (box < 2 || box*box != size || size > Sudoku.MAX_SIZE){
+            throw new IllegalArgumentException("Grid size must be 4, 9, 16 or 25: " + size);
+        }
+        // A misspelt rule would otherwise be dropped and its constraint silently ignored
+        for (String name : rules.keySet()){
+            if (!RULES.contains(name)) throw new IllegalArgumentException("Unknown rule: " + name);
+        }
+        int cells = size*size;
+
+        // Houses in which every digit appears exactly once
+        List<int[]> houses = new ArrayList<>();
+        if (rules.containsKey("normal")){
+            for (int i=0; i<size; i++){
+                int[] row = new int[size];
+                int[] col = new int[size];
+                int[] block = new int[size];
+                for (int k=0; k<size; k++){
+                    row[k] = i*size+k;
+                    col[k] = k*size+i;
+                    block[k] = ((i/box)*box+k/box)*size+(i%box)*box+k%box;
+                }
+                houses.add(row);
+                houses.add(col);
+                houses.add(block);
+            }
+        }
+        if (rules.containsKey("diagonal")){
+            int[] main = new int[size];
+            int[] anti = new int[size];
+            for (int i=0; i<size; i++){
+                main[i] = i*size+i;
+                anti[i] = i*size+size-1-i;
+            }
+            houses.add(main);
+            houses.add(anti);
+        }
+        if (rules.containsKey("disjoint")){
+            for (int i=0; i<size; i++){
+                int[] group = new int[size];
+                for (int k=0; k<size; k++){
+                    group[k] = ((k/box)*box+i/box)*size+(k%box)*box+i%box;
+                }
+                houses.add(group);
+            }
+        }
+
+        // Cells that may never share a digit
+        boolean[][] seen = new boolean[cells][cells];
+        for (int[] house : houses){
+            for (int a : house){
+                for (int b : house){
+                    if (a != b) seen[a][b] = true;
+                }
+            }
+        }
+        if (rules.containsKey("knight")) addMoves(seen, size, KNIGHT_ROW, KNIGHT_COL);
+        if (rules.containsKey("king")) addMoves(seen, size, KING_ROW, KING_COL);
+        int[][] peers = new int[cells][];
+        for (int i=0; i<cells; i++){
+            peers[i] = indicesOf(seen[i]);
+        }
+
+        // Orthogonal neighbours that may not hold consecutive digits
+        int[][] neighbours = new int[cells][];
+        boolean nonconsecutive = rules.containsKey("nonconsecutive");
+        for (int i=0; i<cells; i++){
+            boolean[] adjacent = new boolean[cells];
+            if (nonconsecutive) markMoves(adjacent, size, i, ORTHOGONAL_ROW, ORTHOGONAL_COL);
+            neighbours[i] = indicesOf(adjacent);
+        }
+
+        // Constraints over explicit cell lists
+        List<Constraint> all = new ArrayList<>();
+        if (rules.containsKey("thermo")){
+            for (List<Integer> thermo : entries(rules, "thermo")) all.add(new ThermoConstraint(Constraint.toArray(thermo)));
+        }
+        if (rules.containsKey("arrow")){
+            for (List<Integer> arrow : entries(rules, "arrow")) all.add(new ArrowConstraint(Constraint.toArray(arrow)));
+        }
+        if (rules.containsKey("palindrome")){
+            for (List<Integer> palindrome : entries(rules, "palindrome")) all.add(new PalindromeConstraint(Constraint.toArray(palindrome)));
+        }
+        if (rules.containsKey("xv")){
+            for (List<Integer> xv : entries(rules, "xv")){
+                if (xv.size() != 3) throw new IllegalArgumentException("XV rules are (sum, cell, cell) triples: " + xv);
+                all.add(new XVConstraint(xv.get(0), xv.get(1), xv.get(2)));
+            }
+        }
+        boolean[][] dotted = new boolean[cells][cells];
+        if (rules.containsKey("kropki")){
+            for (List<Integer> kropki : entries(rules, "kropki")){
+                if (kropki.size() != 3) throw new IllegalArgumentException("Kropki rules are (type, cell, cell) triples: " + kropki);
+                KropkiConstraint constraint = new KropkiConstraint(kropki.get(0), kropki.get(1), kropki.get(2));
+                checkCells(constraint, cells);
+                all.add(constraint);
+                dotted[kropki.get(1)][kropki.get(2)] = true;
+                dotted[kropki.get(2)][kropki.get(1)] = true;
+            }
+        }
+        if (rules.containsKey("negativekropki")){
+            // Every pair of adjacent cells without a dot holds neither consecutive digits nor a double
+            for (int i=0; i<cells; i++){
+                boolean[] adjacent = new boolean[cells];
+                markMoves(adjacent, size, i, ORTHOGONAL_ROW, ORTHOGONAL_COL);
+                for (int j : indicesOf(adjacent)){
+                    if (j > i && !dotted[i][j]) all.add(new KropkiConstraint(0, i, j));
+                }
+            }
+        }
+        if (rules.containsKey("sandwich")){
+            boolean[] lines = new boolean[2*size+1];
+            for (List<Integer> sandwich : entries(rules, "sandwich")){
+                if (sandwich.size() != 2) throw new IllegalArgumentException("Sandwich rules are (line, sum) pairs: " + sandwich);
+                SandwichConstraint constraint = new SandwichConstraint(size, sandwich.get(0), sandwich.get(1));
+                if (lines[constraint.getLine()]) throw new IllegalArgumentException("Sandwich line " + constraint.getLine() + " has two sums");
+                lines[constraint.getLine()] = true;
+                all.add(constraint);
+            }
+        }
+
+        List<List<Constraint>> touching = new ArrayList<>();
+        for (int i=0; i<cells; i++) touching.add(new ArrayList<>());
+        for (Constraint constraint : all){
+            checkCells(constraint, cells);
+            for (int cell : constraint.getCells()){
+                List<Constraint> list = touching.get(cell);
+                if (!list.contains(constraint)) list.add(constraint);
+            }
+        }
+        Constraint[][] constraints = new Constraint[cells][];
+        for (int i=0; i<cells; i++){
+            constraints[i] = touching.get(i).toArray(new Constraint[0]);
+        }
+
+        return new ConstraintGraph(rules, size, box, houses.toArray(new int[0][]), peers, neighbours,
+                constraints, all.toArray(new Constraint[0]));
+    }
+
+    /**
+     * @return the number of rows, columns and digits of the grid
+     */
+    public int getSize(){
+        return mySize;
+    }
+
+    /**
+     * @return the number of rows and columns of a box
+     */
+    public int getBoxSize(){
+        return myBoxSize;
+    }
+
+    /**
+     * @return the number of cells of the grid
+     */
+    public int getCellCount(){
+        return mySize*mySize;
+    }
+
+    /**
+     * @return the rules this graph was compiled from
+     */
+    public Map<String, List<List<Integer>>> getRules(){
+        return myRules;
+    }
+
+    /**
+     * @return every house (row, column, box, diagonal or disjoint group) in which each digit
+     * appears once
+     */
+    public int[][] getHouses(){
+        return myHouses;
+    }
+
+    /**
+     * @param idx the cell index
+     * @return the indices into getHouses() of the houses containing the cell, ascending
+     */
+    public int[] getHousesOf(int idx){
+        return myHousesOf[idx];
+    }
+
+    /**
+     * @param idx the cell index
+     * @return the cells that may not share a digit with the cell
+     */
+    public int[] getPeers(int idx){
+        return myPeers[idx];
+    }
+
+    /**
+     * @param idx the cell index
+     * @return the cells that may not hold a digit consecutive to the cell's
+     */
+    public int[] getNeighbours(int idx){
+        return myNeighbours[idx];
+    }
+
+    /**
+     * @param idx the cell index
+     * @return the cell-list constraints that cover the cell
+     */
+    public Constraint[] getConstraints(int idx){
+        return myConstraints[idx];
+    }
+
+    /**
+     * @return every cell-list constraint
+     */
+    public Constraint[] getAllConstraints(){
+        return myAllConstraints;
+    }
+
+    /**
+     * Check the digit in one cell against everything that touches it
+     * @param s the Sudoku
+     * @param idx the cell of the new digit
+     * @return true iff it violates no rules
+     */
+    public boolean isValid(Sudoku s, int idx){
+        int value = s.getCell(idx);
+        for (int peer : myPeers[idx]){
+            if (s.getCell(peer) == value) return false;
+        }
+        for (int neighbour : myNeighbours[idx]){
+            int other = s.getCell(neighbour);
+            if (other != 0 && Math.abs(other-value) == 1) return false;
+        }
+        for (Constraint constraint : myConstraints[idx]){
+            if (!constraint.isValid(s)) return false;
+        }
+        return true;
+    }
+
+    /**
+     * Reject a constraint covering cells outside the grid
+     */
+    /**
+     * @return the entries of a rule that needs them
+     */
+    private static List<List<Integer>> entries(Map<String, List<List<Integer>>> rules, String name){
+        List<List<Integer>> entries = rules.get(name);
+        if (entries == null) throw new IllegalArgumentException("Rule " + name + " needs entries");
+        return entries;
+    }
+
+    private static void checkCells(Constraint constraint, int cells){
+        for (int cell : constraint.getCells()){
+            if (cell < 0 || cell >= cells) throw new IllegalArgumentException("Cell index must be 0 to " + (cells-1) + ": " + cell);
+        }
+    }
+
+    /**
+     * Mark every pair of cells a chess move apart
+     */
+    private static void addMoves(boolean[][] seen, int size, int[] rowDelta, int[] colDelta){
+        for (int i=0; i<size*size; i++){
+            markMoves(seen[i], size, i, rowDelta, colDelta);
+        }
+    }
+
+    /**
+     * Mark the cells a chess move away from one cell
+     */
+    private static void markMoves(boolean[] marks, int size, int idx, int[] rowDelta, int[] colDelta){
+        int row = idx/size;
+        int col = idx%size;
+        for (int k=0; k<rowDelta.length; k++){
+            int r = row+rowDelta[k];
+            int c = col+colDelta[k];
+            if (0 <= r && r < size && 0 <= c && c < size) marks[r*size+c] = true;
+        }
+    }
+
+    /**
+     * @param marks a flag per cell
+     * @return the indices of the set flags
+     */
+    private static int[] indicesOf(boolean[] marks){
+        int count = 0;
+        for (boolean mark : marks) if (mark) count++;
+        int[] indices = new int[count];
+        count = 0;
+        for (int i=0; i<marks.length; i++){
+            if (marks[i]) indices[count++] = i;
+        }
+        return indices;
+    }
+}
@@ -0,0 +1,377 @@
+import java.util.*;
+
+/**
+ * Knuth's Algorithm X on dancing links, for Sudokus whose rules are all "each digit once per
+ * house" plus pairwise exclusions. Every (cell, digit) candidate is a row; each cell and each
+ * (house, digit) is a primary column that must be covered exactly once; knight, king and
+ * nonconsecutive exclusions are secondary columns that may be covered at most once.
+ */
+public final class DancingLinks {
+    private static final Set<String> SUPPORTED = new HashSet<>(Arrays.asList(
+            "normal", "diagonal", "disjoint", "knight", "king", "nonconsecutive"));
+
+    // Node links, node 0 is the root and nodes 1..columns are the column headers
+    private int[] myLeft;
+    private int[] myRight;
+    private int[] myUp;
+    private int[] myDown;
+    private int[] myColumn;
+    private int[] myRow;
+    private int[] mySize;
+    private int myNodes;
+
+    // Candidate of each row
+    private final int[] myRowCell;
+    private final int[] myRowDigit;
+    private int myRows;
+
+    private final int[] mySolution;
+    private int myDepth;
+    /** Two placed digits clash, so there is no cover */
+    private boolean myUnsolvable = false;
+    /** Cells of the first cover counted, null once it is filled in or if it is not wanted */
+    private int[] myFirst;
+    private SearchContext myContext;
+
+    /**
+     * Check if the rules of a Sudoku reduce to exact cover
+     * @param graph the compiled rules
+     * @return true iff every rule is normal, diagonal, disjoint, knight, king or nonconsecutive
+     */
+    public static boolean supports(ConstraintGraph graph){
+        Map<String, List<List<Integer>>> rules = graph.getRules();
+        return rules.containsKey("normal") && SUPPORTED.containsAll(rules.keySet())
+                && graph.getAllConstraints().length == 0;
+    }
+
+    /**
+     * Solve a Sudoku by exact cover, placing the solution in it
+     * @param s the Sudoku, with rules accepted by supports()
+     * @return the completed Sudoku, null if it has no solution
+     */
+    public static Sudoku solve(Sudoku s){
+        return solve(s, null);
+    }
+
+    /**
+     * Solve a Sudoku by exact cover within the limits of a search context
+     * @param s the Sudoku, with rules accepted by supports()
+     * @param context the limits of the search, visited at every node, null for none
+     * @return the completed Sudoku, null if it has no solution or a limit ran out
+     */
+    public static Sudoku solve(Sudoku s, SearchContext context){
+        DancingLinks links = new DancingLinks(s);
+        links.myContext = context;
+        if (!links.search()) return null;
+        for (int i=0; i<links.myDepth; i++){
+            int row = links.mySolution[i];
+            if (s.getCell(links.myRowCell[row]) == 0) s.assign(links.myRowCell[row], links.myRowDigit[row]);
+        }
+        return s;
+    }
+
+    /**
+     * Count the exact covers of a Sudoku, stopping as soon as the limit is reached
+     * @param s the Sudoku, with rules accepted by supports(), left unchanged; its givens need not
+     * be pruned first
+     * @param limit the most solutions to look for
+     * @return the number of solutions, at most limit
+     */
+    public static int count(Sudoku s, int limit){
+        return count(s, limit, null);
+    }
+
+    /**
+     * Count the exact covers of a Sudoku, keeping the first one found
+     * @param s the Sudoku, with rules accepted by supports(), left unchanged; its givens need not
+     * be pruned first
+     * @param limit the most solutions to look for
+     * @param first filled in with the cells of the first solution if there is one, null if not
+     * wanted
+     * @return the number of solutions, at most limit
+     */
+    public static int count(Sudoku s, int limit, int[] first){
+        DancingLinks links = new DancingLinks(s);
+        links.myFirst = first;
+        return links.count(limit);
+    }
+
+    /**
+     * Build the exact cover matrix of the remaining candidates of a Sudoku
+     * @param s the Sudoku
+     */
+    private DancingLinks(Sudoku s){
+        Layout layout = Layout.of(s.getConstraintGraph());
+        int columns = layout.myColumns;
+        int primary = layout.myPrimary;
+        int cells = s.getCellCount();
+        int digits = s.getSize();
+        mySolution = new int[cells];
+
+        // Candidate rows
+        int rows = 0;
+        int nodes = 1 + columns;
+        for (int i=0; i<cells; i++){
+            int m = s.getCell(i) != 0 ? Sudoku.bit(s.getCell(i)) : s.getMask(i);
+            for (; m!=0; m&=m-1){
+                rows++;
+                nodes += layout.myRowColumns[i*digits + Sudoku.lowestDigit(m)-1].length;
+            }
+        }
+        myLeft = new int[nodes];
+        myRight = new int[nodes];
+        myUp = new int[nodes];
+        myDown = new int[nodes];
+        myColumn = new int[nodes];
+        myRow = new int[nodes];
+        mySize = new int[columns+1];
+        myRowCell = new int[rows];
+        myRowDigit = new int[rows];
+
+        // Headers, only primary columns are linked to the root
+        for (int c=0; c<=columns; c++){
+            myUp[c] = c;
+            myDown[c] = c;
+            myColumn[c] = c;
+            myLeft[c] = c;
+            myRight[c] = c;
+        }
+        for (int c=1; c<=primary; c++){
+            myLeft[c] = c-1;
+            myRight[c-1] = c;
+        }
+        myLeft[0] = primary;
+        myRight[primary] = 0;
+        myNodes = columns+1;
+
+        // Every row goes in before any is covered, or rows added later would be linked into
+        // columns already taken out of the matrix
+        int[] placed = new int[cells];
+        int placedCount = 0;
+        for (int i=0; i<cells; i++){
+            int value = s.getCell(i);
+            if (value != 0){
+                placed[placedCount++] = addRow(i, value, layout.myRowColumns[i*digits + value-1]);
+                continue;
+            }
+            for (int m=s.getMask(i); m!=0; m&=m-1){
+                int d = Sudoku.lowestDigit(m);
+                addRow(i, d, layout.myRowColumns[i*digits + d-1]);
+            }
+        }
+
+        // Placed digits are taken up front rather than found by the search; two of them sharing a
+        // column leave no cover at all
+        boolean[] covered = new boolean[columns+1];
+        for (int k=0; k<placedCount && !myUnsolvable; k++){
+            int first = placed[k];
+            int j = first;
+            do{
+                if (covered[myColumn[j]]) myUnsolvable = true;
+                j = myRight[j];
+            } while (j != first);
+            if (myUnsolvable) break;
+            mySolution[myDepth++] = myRow[first];
+            do{
+                covered[myColumn[j]] = true;
+                cover(myColumn[j]);
+                j = myRight[j];
+            } while (j != first);
+        }
+    }
+
+    /**
+     * Append a row covering the given columns
+     * @return the first node of the row
+     */
+    private int addRow(int cell, int digit, int[] columns){
+        int length = columns.length;
+        int id = myRows++;
+        myRowCell[id] = cell;
+        myRowDigit[id] = digit;
+        int first = myNodes;
+        for (int k=0; k<length; k++){
+            int node = myNodes++;
+            int c = columns[k];
+            myColumn[node] = c;
+            myRow[node] = id;
+            myUp[node] = myUp[c];
+            myDown[node] = c;
+            myDown[myUp[c]] = node;
+            myUp[c] = node;
+            mySize[c]++;
+            myLeft[node] = k == 0 ? node : node-1;
+            myRight[node] = first;
+            myRight[myLeft[node]] = node;
+            myLeft[first] = node;
+        }
+        return first;
+    }
+
+    /**
+     * Algorithm X, always branching on the primary column with the fewest rows
+     * @return true iff an exact cover was found, left in mySolution
+     */
+    private boolean search(){
+        if (myUnsolvable || myContext != null && !myContext.visit()) return false;
+        if (myRight[0] == 0) return true;
+        int best = myRight[0];
+        for (int c=myRight[best]; c!=0 && mySize[best] > 1; c=myRight[c]){
+            if (mySize[c] < mySize[best]) best = c;
+        }
+        if (mySize[best] == 0) return false;
+        cover(best);
+        for (int r=myDown[best]; r!=best; r=myDown[r]){
+            mySolution[myDepth++] = myRow[r];
+            for (int j=myRight[r]; j!=r; j=myRight[j]) cover(myColumn[j]);
+            if (search()) return true;
+            for (int j=myLeft[r]; j!=r; j=myLeft[j]) uncover(myColumn[j]);
+            myDepth--;
+        }
+        uncover(best);
+        return false;
+    }
+
+    /**
+     * Algorithm X run past the first cover
+     * @param limit the most covers still wanted
+     * @return the number of exact covers below this node, at most limit
+     */
+    private int count(int limit){
+        if (myUnsolvable) return 0;
+        if (myRight[0] == 0){
+            if (myFirst != null){
+                for (int i=0; i<myDepth; i++) myFirst[myRowCell[mySolution[i]]] = myRowDigit[mySolution[i]];
+                myFirst = null;
+            }
+            return 1;
+        }
+        int best = myRight[0];
+        for (int c=myRight[best]; c!=0 && mySize[best] > 1; c=myRight[c]){
+            if (mySize[c] < mySize[best]) best = c;
+        }
+        if (mySize[best] == 0) return 0;
+        cover(best);
+        int count = 0;
+        for (int r=myDown[best]; r!=best && count<limit; r=myDown[r]){
+            mySolution[myDepth++] = myRow[r];
+            for (int j=myRight[r]; j!=r; j=myRight[j]) cover(myColumn[j]);
+            count += count(limit-count);
+            for (int j=myLeft[r]; j!=r; j=myLeft[j]) uncover(myColumn[j]);
+            myDepth--;
+        }
+        uncover(best);
+        return count;
+    }
+
+    private void cover(int c){
+        myRight[myLeft[c]] = myRight[c];
+        myLeft[myRight[c]] = myLeft[c];
+        for (int i=myDown[c]; i!=c; i=myDown[i]){
+            for (int j=myRight[i]; j!=i; j=myRight[j]){
+                myDown[myUp[j]] = myDown[j];
+                myUp[myDown[j]] = myUp[j];
+                mySize[myColumn[j]]--;
+            }
+        }
+    }
+
+    private void uncover(int c){
+        for (int i=myUp[c]; i!=c; i=myUp[i]){
+            for (int j=myLeft[i]; j!=i; j=myLeft[j]){
+                mySize[myColumn[j]]++;
+                myDown[myUp[j]] = j;
+                myUp[myDown[j]] = j;
+            }
+        }
+        myRight[myLeft[c]] = c;
+        myLeft[myRight[c]] = c;
+    }
+
+    /**
+     * Columns of every (cell, digit) row for one set of rules, shared by every Sudoku using them
+     */
+    private static final class Layout {
+        private static final Map<ConstraintGraph, Layout> CACHE = Collections.synchronizedMap(new WeakHashMap<>());
+
+        private final int myPrimary;
+        private final int myColumns;
+        private final int[][] myRowColumns;
+
+        static Layout of(ConstraintGraph graph){
+            Layout layout = CACHE.get(graph);
+            if (layout == null){
+                layout = new Layout(graph);
+                CACHE.put(graph, layout);
+            }
+            return layout;
+        }
+
+        private Layout(ConstraintGraph graph){
+            int[][] houses = graph.getHouses();
+            int cells = graph.getCellCount();
+            int digits = graph.getSize();
+
+            // Houses of each cell, and which cells already exclude each other through a house
+            List<List<Integer>> housesOf = new ArrayList<>();
+            for (int i=0; i<cells; i++) housesOf.add(new ArrayList<>());
+            boolean[][] together = new boolean[cells][cells];
+            for (int h=0; h<houses.length; h++){
+                for (int a : houses[h]){
+                    housesOf.get(a).add(h);
+                    for (int b : houses[h]) together[a][b] = true;
+                }
+            }
+
+            // Secondary columns: one per digit for each excluded pair not sharing a house, and one
+            // per consecutive digit pair, in both directions, for each nonconsecutive pair
+            int primary = cells + houses.length*digits;
+            int columns = primary;
+            List<List<int[]>> pairsOf = new ArrayList<>();
+            for (int i=0; i<cells; i++) pairsOf.add(new ArrayList<>());
+            for (int a=0; a<cells; a++){
+                for (int b : graph.getPeers(a)){
+                    if (b < a || together[a][b]) continue;
+                    pairsOf.get(a).add(new int[]{columns, 0});
+                    pairsOf.get(b).add(new int[]{columns, 0});
+                    columns += digits;
+                }
+                for (int b : graph.getNeighbours(a)){
+                    if (b < a) continue;
+                    // First block: a holds d and b holds d+1, second block: a holds d+1 and b holds d
+                    pairsOf.get(a).add(new int[]{columns, 1});
+                    pairsOf.get(b).add(new int[]{columns, 2});
+                    columns += 2*(digits-1);
+                }
+            }
+
+            int[][] rowColumns = new int[cells*digits][];
+            int[] row = new int[1 + houses.length + 2*cells];
+            for (int i=0; i<cells; i++){
+                for (int d=1; d<=digits; d++){
+                    int length = 0;
+                    row[length++] = 1 + i;
+                    for (int h : housesOf.get(i)) row[length++] = 1 + cells + h*digits + d-1;
+                    for (int[] pair : pairsOf.get(i)){
+                        int base = 1 + pair[0];
+                        if (pair[1] == 0){
+                            row[length++] = base + d-1;
+                        }
+                        else if (pair[1] == 1){
+                            if (d < digits) row[length++] = base + d-1;
+                            if (d > 1) row[length++] = base + digits-1 + d-2;
+                        }
+                        else{
+                            if (d > 1) row[length++] = base + d-2;
+                            if (d < digits) row[length++] = base + digits-1 + d-1;
+                        }
+                    }
+                    rowColumns[i*digits + d-1] = Arrays.copyOf(row, length);
+                }
+            }
+            myPrimary = primary;
+            myColumns = columns;
+            myRowColumns = rowColumns;
+        }
+    }
+}
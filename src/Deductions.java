@@ -0,0 +1,81 @@
+import java.util.*;
+
+/**
+ * A pipeline of logical techniques run to a fixpoint: each technique is tried in order, and
+ * whenever one changes the grid the changes are propagated and the pipeline starts over from the
+ * first, cheapest technique. It stops once no technique changes anything.
+ *
+ * Techniques work over every house of the rules, so diagonals and disjoint groups take part
+ * when they are enabled. A search given a pipeline runs it before every branch.
+ */
+public final class Deductions {
+    /** Hidden singles, intersections, naked and hidden pairs and triples, then X-wing */
+    public static final Deductions ALL = new Deductions(Arrays.asList(new HiddenSingles(), new Intersections(),
+            new NakedSubsets(2), new HiddenSubsets(2), new NakedSubsets(3), new HiddenSubsets(3), new XWing()));
+
+    private final Technique[] myTechniques;
+
+    /**
+     * @param techniques the techniques in the order they are tried, cheapest first
+     */
+    public Deductions(List<Technique> techniques){
+        myTechniques = techniques.toArray(new Technique[0]);
+    }
+
+    /**
+     * @return the techniques in the order they are tried
+     */
+    public List<Technique> getTechniques(){
+        return Collections.unmodifiableList(Arrays.asList(myTechniques));
+    }
+
+    /**
+     * Run the techniques to a fixpoint
+     * @param s the Sudoku, fully propagated
+     * @param stats where each technique's runs and firings are recorded, null to record nothing
+     * @return false iff the Sudoku was found to have no solution
+     */
+    public boolean apply(Sudoku s, SolverStats stats){
+        int t = 0;
+        while (t < myTechniques.length){
+            Technique technique = myTechniques[t];
+            int mark = s.mark();
+            long start = stats == null ? 0 : System.nanoTime();
+            boolean ok = technique.apply(s);
+            int changes = s.mark()-mark;
+            if (stats != null) stats.deduce(technique.getName(), start, ok, changes);
+            if (ok && changes > 0) ok = SudokuSolver.propagate(s, stats);
+            if (!ok){
+                s.clearChanged();
+                return false;
+            }
+            t = changes > 0 ? 0 : t+1;
+        }
+        return true;
+    }
+
+    /**
+     * Find where each digit can go in a house
+     * @param s the Sudoku
+     * @param house the cells of the house
+     * @param places filled with, for each digit v, bit k set iff house[k] has v as a candidate
+     */
+    static void places(Sudoku s, int[] house, int[] places){
+        Arrays.fill(places, 0, s.getSize()+1, 0);
+        for (int k=0; k<house.length; k++){
+            for (int m=s.getMask(house[k]); m!=0; m&=m-1) places[Sudoku.lowestDigit(m)] |= 1 << k;
+        }
+    }
+
+    /**
+     * @return String representation of the pipeline
+     */
+    public String toString(){
+        StringBuilder out = new StringBuilder();
+        for (Technique technique : myTechniques){
+            if (out.length() > 0) out.append(", ");
+            out.append(technique.getName());
+        }
+        return out.toString();
+    }
+}
@@ -0,0 +1,285 @@
+import java.util.*;
+
+/**
+ * Example puzzles for every supported rule, shared by main and the benchmarks
+ */
+public final class Examples {
+    private static final Map<String, Example> EXAMPLES = new LinkedHashMap<>();
+    private static final Map<String, Example> HARD = new LinkedHashMap<>();
+
+    static {
+        // normal
+        add("grid1", "normal", "005009400407010002008020095004000070000607000060000200980060300300090104001800600", rules("normal"));
+        add("grid", "normal", "000000000003010400100509000000020650350000089079030000000203008004060200000000000", rules("normal"));
+
+        // knight
+        add("grid3", "knight", "000000000002300000010040000080050000007600000000000870000009006000002005000000340", rules("normal", "knight"));
+
+        // king
+        add("grid4", "king", "000628000009000300060000010700000008400000005600000003080000090005000700000971000", rules("normal", "king"));
+
+        // thermo
+        List<List<Integer>> thermoRules = new ArrayList<>();
+        thermoRules.add(Arrays.asList(0, 10, 20, 30, 38, 46));
+        thermoRules.add(Arrays.asList(8, 16, 24, 32, 22, 12));
+        thermoRules.add(Arrays.asList(72, 64, 56, 48, 58, 68));
+        thermoRules.add(Arrays.asList(80, 70, 60, 50, 42, 34));
+        add("grid5", "thermo", "000000000000000000000900000000000005000000000000000300000000000000000800000009000", rules("normal", "thermo", thermoRules));
+
+        // diagonal
+        add("grid6", "diagonal", "000902000000807000900050003007409300800205007060000050200301004000504000009000700", rules("normal", "diagonal"));
+
+        // disjoint
+        add("grid7", "disjoint", "090040010100305006006000400000901050207030901000604000009000300700403009080060047", rules("normal", "disjoint"));
+
+        // nonconsecutive and knight
+        add("grid8", "nonconsecutive and knight", "000000000000000000000407000006000500000000000004000300000205000000000000000000000", rules("normal", "nonconsecutive", "knight"));
+
+        // nonconsecutive and knight and king
+        add("grid9", "nonconsecutive and knight and king", "000000000000000000000000000000000000001000000000000200000000000000000000000000000", rules("normal", "nonconsecutive", "knight", "king"));
+
+        // arrow
+        List<List<Integer>> arrowRules = new ArrayList<>();
+        arrowRules.add(Arrays.asList(10, 19, 28));
+        arrowRules.add(Arrays.asList(11, 20, 29));
+        arrowRules.add(Arrays.asList(12, 21, 30));
+        arrowRules.add(Arrays.asList(16, 15, 14));
+        arrowRules.add(Arrays.asList(25, 24, 23));
+        arrowRules.add(Arrays.asList(34, 33, 32));
+        arrowRules.add(Arrays.asList(46, 47, 48));
+        arrowRules.add(Arrays.asList(55, 56, 57));
+        arrowRules.add(Arrays.asList(64, 65, 66));
+        arrowRules.add(Arrays.asList(68, 59, 50));
+        arrowRules.add(Arrays.asList(69, 60, 51));
+        arrowRules.add(Arrays.asList(70, 61, 52));
+        add("grid10", "arrow", "000000000034700060000000070000000090000000000080000000090000000060009850000000000", rules("normal", "arrow", arrowRules));
+
+        // palindrome
+        List<List<Integer>> palindromeRules = new ArrayList<>();
+        palindromeRules.add(Arrays.asList(9, 19, 29));
+        palindromeRules.add(Arrays.asList(11, 21, 31));
+        palindromeRules.add(Arrays.asList(13, 23, 33));
+        palindromeRules.add(Arrays.asList(15, 25, 35));
+        palindromeRules.add(Arrays.asList(45, 55, 65));
+        palindromeRules.add(Arrays.asList(47, 57, 67));
+        palindromeRules.add(Arrays.asList(49, 59, 69));
+        palindromeRules.add(Arrays.asList(51, 61, 71));
+        add("grid11", "palindrome", "002030400000905000000000000000000000320000078000000000000000000000504000506000809", rules("normal", "palindrome", palindromeRules));
+
+        // XV
+        List<List<Integer>> xvRules = new ArrayList<>();
+        xvRules.add(Arrays.asList(5,0,9));
+        xvRules.add(Arrays.asList(5,6,15));
+        xvRules.add(Arrays.asList(5,14,15));
+        xvRules.add(Arrays.asList(5,21,30));
+        xvRules.add(Arrays.asList(5,28,37));
+        xvRules.add(Arrays.asList(5,44,53));
+        xvRules.add(Arrays.asList(5,49,58));
+        xvRules.add(Arrays.asList(10,2,3));
+        xvRules.add(Arrays.asList(10,7,8));
+        xvRules.add(Arrays.asList(10,4,13));
+        xvRules.add(Arrays.asList(10,15,16));
+        xvRules.add(Arrays.asList(10,23,32));
+        xvRules.add(Arrays.asList(10,31,32));
+        xvRules.add(Arrays.asList(10,34,35));
+        xvRules.add(Arrays.asList(10,36,37));
+        xvRules.add(Arrays.asList(10,42,43));
+        xvRules.add(Arrays.asList(10,40,49));
+        xvRules.add(Arrays.asList(10,41,50));
+        xvRules.add(Arrays.asList(10,57,58));
+        xvRules.add(Arrays.asList(10,61,62));
+        xvRules.add(Arrays.asList(10,63,64));
+        xvRules.add(Arrays.asList(10,66,67));
+        xvRules.add(Arrays.asList(10,70,71));
+        xvRules.add(Arrays.asList(10,79,80));
+        add("grid12", "xv", "000000000000000000002000405000000000000000000000000000504000100000000000000000000", rules("normal", "xv", xvRules));
+
+        // kropki
+        List<List<Integer>> kropkiRules = new ArrayList<>();
+        kropkiRules.add(Arrays.asList(1,3,4));
+        kropkiRules.add(Arrays.asList(1,2,11));
+        kropkiRules.add(Arrays.asList(1,14,15));
+        kropkiRules.add(Arrays.asList(1,18,19));
+        kropkiRules.add(Arrays.asList(1,24,33));
+        kropkiRules.add(Arrays.asList(1,27,36));
+        kropkiRules.add(Arrays.asList(1,33,42));
+        kropkiRules.add(Arrays.asList(1,36,45));
+        kropkiRules.add(Arrays.asList(1,39,48));
+        kropkiRules.add(Arrays.asList(1,41,50));
+        kropkiRules.add(Arrays.asList(1,48,49));
+        kropkiRules.add(Arrays.asList(1,55,64));
+        kropkiRules.add(Arrays.asList(1,65,74));
+        kropkiRules.add(Arrays.asList(2,6,15));
+        kropkiRules.add(Arrays.asList(2,16,25));
+        kropkiRules.add(Arrays.asList(2,30,39));
+        kropkiRules.add(Arrays.asList(2,31,32));
+        kropkiRules.add(Arrays.asList(2,32,41));
+        kropkiRules.add(Arrays.asList(2,35,44));
+        kropkiRules.add(Arrays.asList(2,44,53));
+        kropkiRules.add(Arrays.asList(2,38,47));
+        kropkiRules.add(Arrays.asList(2,47,56));
+        kropkiRules.add(Arrays.asList(2,61,62));
+        kropkiRules.add(Arrays.asList(2,65,66));
+        kropkiRules.add(Arrays.asList(2,69,78));
+        kropkiRules.add(Arrays.asList(2,76,77));
+        add("grid13", "kropki", "000000000000000000000000000000000000000000000000000000000000000000000000000000000", rules("normal", "kropki", kropkiRules));
+
+        // sandwich and knight
+        List<List<Integer>> sandwichRules = new ArrayList<>();
+        sandwichRules.add(Arrays.asList(1,5));
+        sandwichRules.add(Arrays.asList(2,28));
+        sandwichRules.add(Arrays.asList(3,8));
+        sandwichRules.add(Arrays.asList(4,0));
+        sandwichRules.add(Arrays.asList(5,29));
+        sandwichRules.add(Arrays.asList(6,21));
+        sandwichRules.add(Arrays.asList(7,2));
+        sandwichRules.add(Arrays.asList(8,8));
+        sandwichRules.add(Arrays.asList(9,7));
+        sandwichRules.add(Arrays.asList(10,2));
+        sandwichRules.add(Arrays.asList(11,18));
+        sandwichRules.add(Arrays.asList(12,22));
+        sandwichRules.add(Arrays.asList(13,19));
+        sandwichRules.add(Arrays.asList(14,0));
+        sandwichRules.add(Arrays.asList(15,33));
+        sandwichRules.add(Arrays.asList(16,9));
+        sandwichRules.add(Arrays.asList(17,2));
+        sandwichRules.add(Arrays.asList(18,28));
+        add("grid14", "sandwich and knight", "000000000000000000000000000000000000000000000000000000000000000000010000000000000", rules("normal", "sandwich", sandwichRules, "knight"));
+
+        // 4x4 and 16x16
+        add("grid15", "4x4", "0004000004013000", rules("normal"));
+        add("grid16", "16x16", "D00908A000000F050040F100000E6C0G00000C75000000D300A00G045B002009000000C01007000004C0100080060E00005200009000010CE00G0902003D060F0F000000079GC00B000AC007050000060910E000B0A040F2200040006DF0009010080000E90B04003700000600D002000B0004000680E00DG0002BE0F0000000", rules("normal"));
+
+        // Known-hard classic puzzles
+        addHard("inkala-2012", "800000000003600000070090200050007000000045700000100030001000068008500010090000400");
+        addHard("ai-escargot", "100007090030020008009600500005300900010080002600004000300000010040000007007000300");
+        addHard("easter-monster", "100000002090400050006000700050903000000070000000850040700000600030009080002000001");
+        addHard("golden-nugget", "000000039000001005003050800008090006070002000100400000009080050020000600400700000");
+        addHard("platinum-blonde", "000000012000000003002300400001800005060070800000009000008500000900040500470006000");
+        addHard("coly013", "000000003001005600090040070000009050700000008050402000080020090003500100600000000");
+    }
+
+    private Examples(){
+    }
+
+    /**
+     * @param name the name of the example, e.g. "grid5"
+     * @return the example, null if there is none with that name
+     */
+    public static Example get(String name){
+        Example example = EXAMPLES.get(name);
+        return example != null ? example : HARD.get(name);
+    }
+
+    /**
+     * @return every example of a supported rule, in order
+     */
+    public static Collection<Example> all(){
+        return Collections.unmodifiableCollection(EXAMPLES.values());
+    }
+
+    /**
+     * @return known-hard puzzles under normal rules
+     */
+    public static Collection<Example> hard(){
+        return Collections.unmodifiableCollection(HARD.values());
+    }
+
+    private static void add(String name, String description, String grid, Map<String, List<List<Integer>>> rules){
+        EXAMPLES.put(name, new Example(name, description, grid, rules));
+    }
+
+    private static void addHard(String name, String grid){
+        HARD.put(name, new Example(name, "normal", grid, rules("normal")));
+    }
+
+    /**
+     * @param rules rule names, each optionally followed by its cell lists
+     * @return the rules as a Sudoku takes them
+     */
+    @SuppressWarnings("unchecked")
+    private static Map<String, List<List<Integer>>> rules(Object... rules){
+        Map<String, List<List<Integer>>> map = new HashMap<>();
+        for (int i=0; i<rules.length; i++){
+            List<List<Integer>> lists = null;
+            if (i+1 < rules.length && rules[i+1] instanceof List) lists = (List<List<Integer>>) rules[i+1];
+            map.put((String) rules[i], lists);
+            if (lists != null) i++;
+        }
+        return map;
+    }
+
+    /**
+     * A puzzle together with its rules
+     */
+    public static final class Example {
+        private final String myName;
+        private final String myDescription;
+        private final String myGrid;
+        private final Map<String, List<List<Integer>>> myRules;
+
+        Example(String name, String description, String grid, Map<String, List<List<Integer>>> rules){
+            myName = name;
+            myDescription = description;
+            myGrid = grid;
+            myRules = rules;
+        }
+
+        /**
+         * @return the name of the example
+         */
+        public String getName(){
+            return myName;
+        }
+
+        /**
+         * @return the rules of the example in words
+         */
+        public String getDescription(){
+            return myDescription;
+        }
+
+        /**
+         * @return the puzzle, one character per cell as cellParser reads it
+         */
+        public String getGrid(){
+            return myGrid;
+        }
+
+        /**
+         * @return the number of rows, columns and digits of the puzzle
+         */
+        public int getSize(){
+            return Sudoku.sizeOf(myGrid.length());
+        }
+
+        /**
+         * @return the rules of the example
+         */
+        public Map<String, List<List<Integer>>> getRules(){
+            return myRules;
+        }
+
+        /**
+         * @return a new Sudoku of the example
+         */
+        public Sudoku create(){
+            return new Sudoku(SudokuSolver.cellParser(myGrid), myRules);
+        }
+
+        /**
+         * @param graph the example's rules, already compiled
+         * @return a new Sudoku of the example sharing the compiled rules
+         */
+        public Sudoku create(ConstraintGraph graph){
+            return new Sudoku(SudokuSolver.cellParser(myGrid), graph);
+        }
+
+        /**
+         * @return String representation of the example
+         */
+        public String toString(){
+            return myName + " (" + myDescription + ")";
+        }
+    }
+}
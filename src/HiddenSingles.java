@@ -0,0 +1,48 @@
+/**
+ * A digit with only one place left in a house goes there
+ */
+public final class HiddenSingles implements Technique {
+    public String getName(){
+        return "hidden singles";
+    }
+
+    public boolean apply(Sudoku s){
+        for (int[] house : s.getConstraintGraph().getHouses()){
+            if (!apply(s, house)) return false;
+        }
+        return true;
+    }
+
+    /**
+     * Place every hidden single of one house
+     * @param s the Sudoku
+     * @param house the cells of the house
+     * @return false iff a digit has no place left in the house, also once the only place of an
+     * earlier single took it
+     */
+    public static boolean apply(Sudoku s, int[] house){
+        // Digits with at least one and with at least two places in the house
+        int once = 0;
+        int more = 0;
+        for (int cell : house){
+            int mask = s.getMask(cell);
+            more |= once & mask;
+            once |= mask;
+        }
+        if (once != s.getAllMask()) return false;
+        for (int singles=once & ~more; singles!=0; singles&=singles-1){
+            int value = Sudoku.lowestDigit(singles);
+            // Placing an earlier single leaves its cell only that digit, so two singles sharing a
+            // cell show up here as a digit with no place
+            boolean placed = false;
+            for (int cell : house){
+                if ((s.getMask(cell) & Sudoku.bit(value)) == 0) continue;
+                if (s.getCell(cell) == 0) s.assign(cell, value);
+                placed = true;
+                break;
+            }
+            if (!placed) return false;
+        }
+        return true;
+    }
+}
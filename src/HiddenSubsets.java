@@ -0,0 +1,66 @@
+/**
+ * Hidden pairs and triples: when n digits have only n places between them in a house, those
+ * cells lose every other candidate
+ */
+public final class HiddenSubsets implements Technique {
+    private final int mySize;
+
+    /**
+     * @param size the number of digits in a subset, 2 for pairs and 3 for triples
+     */
+    public HiddenSubsets(int size){
+        if (size < 2) throw new IllegalArgumentException("Subsets have at least 2 digits: " + size);
+        mySize = size;
+    }
+
+    public String getName(){
+        return mySize == 2 ? "hidden pairs" : mySize == 3 ? "hidden triples" : "hidden subsets of " + mySize;
+    }
+
+    public boolean apply(Sudoku s){
+        int[] places = new int[s.getSize()+1];
+        int[] digits = new int[s.getSize()];
+        int[] where = new int[s.getSize()];
+        for (int[] house : s.getConstraintGraph().getHouses()){
+            // Digits with few enough places to be part of a subset; a placed digit has one place
+            Deductions.places(s, house, places);
+            int count = 0;
+            for (int value=1; value<=s.getSize(); value++){
+                int n = Integer.bitCount(places[value]);
+                if (n >= 2 && n <= mySize){
+                    digits[count] = Sudoku.bit(value);
+                    where[count++] = places[value];
+                }
+            }
+            if (count >= mySize && !search(s, house, digits, where, count, 0, 0, 0, 0)) return false;
+        }
+        return true;
+    }
+
+    /**
+     * Try every subset of the listed digits
+     * @param chosen how many digits are in the subset so far
+     * @param subset the candidate bits of the subset so far
+     * @param where the places of the subset so far
+     * @return false iff a subset has fewer places than digits
+     */
+    private boolean search(Sudoku s, int[] house, int[] digits, int[] places, int count, int from, int chosen, int subset, int where){
+        if (chosen == mySize){
+            int found = Integer.bitCount(where);
+            if (found < mySize) return false;
+            if (found > mySize) return true;
+            for (int k=0; k<house.length; k++){
+                if ((where >> k & 1) == 0) continue;
+                int mask = s.getMask(house[k]);
+                if ((mask & ~subset) != 0) s.setMask(house[k], mask & subset);
+            }
+            return true;
+        }
+        for (int k=from; k<count; k++){
+            int union = where | places[k];
+            if (Integer.bitCount(union) > mySize) continue;
+            if (!search(s, house, digits, places, count, k+1, chosen+1, subset | digits[k], union)) return false;
+        }
+        return true;
+    }
+}
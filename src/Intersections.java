@@ -0,0 +1,61 @@
+/**
+ * Pointing and box-line reduction, for any two intersecting houses: when every place of a digit
+ * in one house lies inside another house, the digit is removed from the rest of the other house
+ */
+public final class Intersections implements Technique {
+    public String getName(){
+        return "intersections";
+    }
+
+    public boolean apply(Sudoku s){
+        ConstraintGraph graph = s.getConstraintGraph();
+        int[][] houses = graph.getHouses();
+        int[] places = new int[s.getSize()+1];
+        int[] common = new int[houses.length];
+        for (int a=0; a<houses.length; a++){
+            int[] house = houses[a];
+            Deductions.places(s, house, places);
+            for (int value=1; value<=s.getSize(); value++){
+                // One place is a hidden single, and two houses share at most a box's worth of cells
+                int where = places[value];
+                int count = Integer.bitCount(where);
+                if (count < 2 || count > graph.getBoxSize()) continue;
+
+                // Houses besides this one that hold every place of the digit
+                int commonCount = 0;
+                for (int h : graph.getHousesOf(house[Integer.numberOfTrailingZeros(where)])){
+                    if (h != a) common[commonCount++] = h;
+                }
+                for (int rest=where & where-1; rest!=0 && commonCount>0; rest&=rest-1){
+                    int[] of = graph.getHousesOf(house[Integer.numberOfTrailingZeros(rest)]);
+                    int kept = 0;
+                    for (int k=0; k<commonCount; k++){
+                        if (contains(of, common[k])) common[kept++] = common[k];
+                    }
+                    commonCount = kept;
+                }
+
+                int bit = Sudoku.bit(value);
+                for (int k=0; k<commonCount; k++){
+                    for (int cell : houses[common[k]]){
+                        int mask = s.getMask(cell);
+                        if ((mask & bit) == 0 || contains(graph.getHousesOf(cell), a)) continue;
+                        if (mask == bit) return false;
+                        s.setMask(cell, mask & ~bit);
+                    }
+                }
+            }
+        }
+        return true;
+    }
+
+    /**
+     * @return true iff the house index is in the list
+     */
+    static boolean contains(int[] houses, int house){
+        for (int h : houses){
+            if (h == house) return true;
+        }
+        return false;
+    }
+}
@@ -0,0 +1,85 @@
+import java.util.*;
+
+/**
+ * Two cells hold consecutive digits (white dot, type 1) or one is double the other (black dot,
+ * type 2); under negative kropki rules, adjacent cells without a dot hold neither (type 0)
+ */
+public class KropkiConstraint extends Constraint {
+    /** Compatible digits of each digit up to the largest grid, indexed by type then digit */
+    private static final int[][] COMPATIBLE = new int[3][Sudoku.MAX_SIZE+1];
+
+    static {
+        int all = Sudoku.range(1, Sudoku.MAX_SIZE);
+        for (int v=1; v<=Sudoku.MAX_SIZE; v++){
+            int white = 0;
+            int black = 0;
+            for (int w=1; w<=Sudoku.MAX_SIZE; w++){
+                if (Math.abs(v-w) == 1) white |= Sudoku.bit(w);
+                if (v*2 == w || w*2 == v) black |= Sudoku.bit(w);
+            }
+            COMPATIBLE[1][v] = white;
+            COMPATIBLE[2][v] = black;
+            COMPATIBLE[0][v] = all & ~white & ~black;
+        }
+    }
+
+    private final int myType;
+    private final int[] myCompatible;
+
+    /**
+     * @param type 0 for no dot, 1 for a white dot, 2 for a black dot
+     * @param one the first cell
+     * @param two the second cell
+     */
+    public KropkiConstraint(int type, int one, int two){
+        super(new int[]{one, two});
+        if (type < 0 || type > 2) throw new IllegalArgumentException("Kropki type must be 1 (white) or 2 (black): " + type);
+        myType = type;
+        myCompatible = COMPATIBLE[type];
+    }
+
+    /**
+     * @return 0 for no dot, 1 for a white dot, 2 for a black dot
+     */
+    public int getType(){
+        return myType;
+    }
+
+    public String getRule(){
+        return "kropki";
+    }
+
+    public boolean isValid(Sudoku s){
+        int one = s.getCell(myCells[0]);
+        int two = s.getCell(myCells[1]);
+        return one == 0 || two == 0 || (myCompatible[one] & Sudoku.bit(two)) != 0;
+    }
+
+    public boolean propagate(Sudoku s){
+        // Each cell keeps only the digits that some candidate of the other cell supports
+        int one = s.getMask(myCells[0]);
+        int two = s.getMask(myCells[1]) & support(one);
+        if (two == 0) return false;
+        one &= support(two);
+        if (one == 0) return false;
+        s.setMask(myCells[0], one);
+        s.setMask(myCells[1], two);
+        return true;
+    }
+
+    /**
+     * @param mask the candidates of one cell
+     * @return the candidates the other cell may keep
+     */
+    private int support(int mask){
+        int support = 0;
+        for (int m=mask; m!=0; m&=m-1){
+            support |= myCompatible[Sudoku.lowestDigit(m)];
+        }
+        return support;
+    }
+
+    public String toString(){
+        return getRule() + myType + Arrays.toString(myCells);
+    }
+}
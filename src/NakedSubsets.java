@@ -0,0 +1,69 @@
+/**
+ * Naked pairs and triples: when n empty cells of a house have only n candidates between them,
+ * those digits are removed from the other cells of the house
+ */
+public final class NakedSubsets implements Technique {
+    private final int mySize;
+
+    /**
+     * @param size the number of cells in a subset, 2 for pairs and 3 for triples
+     */
+    public NakedSubsets(int size){
+        if (size < 2) throw new IllegalArgumentException("Subsets have at least 2 cells: " + size);
+        mySize = size;
+    }
+
+    public String getName(){
+        return mySize == 2 ? "naked pairs" : mySize == 3 ? "naked triples" : "naked subsets of " + mySize;
+    }
+
+    public boolean apply(Sudoku s){
+        int[] cells = new int[s.getSize()];
+        for (int[] house : s.getConstraintGraph().getHouses()){
+            // Empty cells with few enough candidates to be part of a subset
+            int count = 0;
+            for (int cell : house){
+                int candidates = Sudoku.bitCount(s.getMask(cell));
+                if (s.getCell(cell) == 0 && candidates <= mySize) cells[count++] = cell;
+            }
+            if (count >= mySize && !search(s, house, cells, count, 0, 0, 0, 0)) return false;
+        }
+        return true;
+    }
+
+    /**
+     * Try every subset of the listed cells
+     * @param chosen how many cells are in the subset so far
+     * @param digits the candidates of the subset so far
+     * @param members bit k set iff cells[k] is in the subset
+     * @return false iff a subset has fewer candidates than cells
+     */
+    private boolean search(Sudoku s, int[] house, int[] cells, int count, int from, int chosen, int digits, int members){
+        if (chosen == mySize){
+            int found = Sudoku.bitCount(digits);
+            if (found < mySize) return false;
+            if (found > mySize) return true;
+            for (int cell : house){
+                if (s.getCell(cell) != 0 || isMember(cells, count, members, cell)) continue;
+                int mask = s.getMask(cell);
+                if ((mask & digits) == 0) continue;
+                if ((mask & ~digits) == 0) return false;
+                s.setMask(cell, mask & ~digits);
+            }
+            return true;
+        }
+        for (int k=from; k<count; k++){
+            int union = digits | s.getMask(cells[k]);
+            if (Sudoku.bitCount(union) > mySize) continue;
+            if (!search(s, house, cells, count, k+1, chosen+1, union, members | 1 << k)) return false;
+        }
+        return true;
+    }
+
+    private static boolean isMember(int[] cells, int count, int members, int cell){
+        for (int k=0; k<count; k++){
+            if ((members >> k & 1) != 0 && cells[k] == cell) return true;
+        }
+        return false;
+    }
+}
@@ -0,0 +1,41 @@
+/**
+ * Digits read the same from either end of the line
+ */
+public class PalindromeConstraint extends Constraint {
+    /**
+     * @param cells the line cells, from one end to the other
+     */
+    public PalindromeConstraint(int[] cells){
+        super(cells);
+    }
+
+    public String getRule(){
+        return "palindrome";
+    }
+
+    public boolean allowsRelabeling(){
+        return true;
+    }
+
+    public boolean isValid(Sudoku s){
+        for (int i=0; i<myCells.length/2; i++){
+            int start = s.getCell(myCells[i]);
+            int end = s.getCell(myCells[myCells.length-i-1]);
+            if (start != 0 && end != 0 && start != end) return false;
+        }
+        return true;
+    }
+
+    public boolean propagate(Sudoku s){
+        // Mirrored cells share whatever candidates they have in common
+        for (int i=0; i<myCells.length/2; i++){
+            int start = myCells[i];
+            int end = myCells[myCells.length-i-1];
+            int common = s.getMask(start) & s.getMask(end);
+            if (common == 0) return false;
+            s.setMask(start, common);
+            s.setMask(end, common);
+        }
+        return true;
+    }
+}
@@ -0,0 +1,175 @@
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.*;
+
+/**
+ * Parallel backtracking: the top levels of the search tree are split into independent copies of
+ * the Sudoku that run as fork-join tasks, and the first branch to find a solution cancels the rest
+ */
+public final class ParallelSolver {
+    private ParallelSolver(){
+    }
+
+    /**
+     * Solve a Sudoku in parallel, splitting enough levels to keep every worker of the pool busy
+     * @param s the Sudoku, filled in with the solution if there is one
+     * @param strategy how cells and candidates are picked when branching
+     * @param pool the pool to run the branches on
+     * @return the completed Sudoku, null if it has no solution
+     */
+    public static Sudoku solve(Sudoku s, SearchStrategy strategy, ForkJoinPool pool){
+        return solve(s, SolveOptions.DEFAULT.withStrategy(strategy), pool).getSolution();
+    }
+
+    /**
+     * Solve a Sudoku in parallel
+     * @param s the Sudoku, filled in with the solution if there is one
+     * @param strategy how cells and candidates are picked when branching
+     * @param pool the pool to run the branches on
+     * @param splitDepth how many levels of the search tree are split into tasks
+     * @return the completed Sudoku, null if it has no solution
+     */
+    public static Sudoku solve(Sudoku s, SearchStrategy strategy, ForkJoinPool pool, int splitDepth){
+        return solve(s, SolveOptions.DEFAULT.withStrategy(strategy), pool, splitDepth).getSolution();
+    }
+
+    /**
+     * Solve a Sudoku in parallel within a time budget, stopping early if cancelled, splitting
+     * enough levels to keep every worker of the pool busy
+     * @param s the Sudoku, filled in with the solution if there is one
+     * @param options the strategy, timeout, token and deductions of the solve; the node limit
+     * applies to each branch searched on its own
+     * @param pool the pool to run the branches on
+     * @return how the solve ended, with the solution if one was found
+     */
+    public static SolveResult solve(Sudoku s, SolveOptions options, ForkJoinPool pool){
+        // Two branches per level on average, 2^(floor(log2 workers)+3) tasks: four to eight times as
+        // many as workers
+        int splitDepth = 34 - Integer.numberOfLeadingZeros(pool.getParallelism());
+        return solve(s, options, pool, splitDepth);
+    }
+
+    /**
+     * Solve a Sudoku in parallel within a time budget, stopping early if cancelled
+     * @param s the Sudoku, filled in with the solution if there is one
+     * @param options the strategy, timeout, token and deductions of the solve; the node limit
+     * applies to each branch searched on its own
+     * @param pool the pool to run the branches on
+     * @param splitDepth how many levels of the search tree are split into tasks
+     * @return how the solve ended, with the solution if one was found
+     */
+    public static SolveResult solve(Sudoku s, SolveOptions options, ForkJoinPool pool, int splitDepth){
+        long start = System.nanoTime();
+        if (!SudokuSolver.prune(s)) return new SolveResult(SolveResult.Status.UNSOLVABLE, null, 0, System.nanoTime()-start, null);
+        SearchStrategy strategy = options.getStrategy() == null ? SearchStrategy.DEFAULT : options.getStrategy();
+        Race race = new Race(options, start);
+        Sudoku solution = pool.invoke(new Branch(new Sudoku(s), strategy.split(), race, splitDepth));
+        long elapsed = System.nanoTime()-start;
+        if (solution == null){
+            SolveResult.Status reason = race.myStopReason.get();
+            SolveResult.Status status = reason == null ? SolveResult.Status.UNSOLVABLE : reason;
+            return new SolveResult(status, null, race.myNodes.get(), elapsed, null);
+        }
+        for (int i=0; i<s.getCellCount(); i++){
+            if (s.getCell(i) == 0) s.assign(i, solution.getCell(i));
+        }
+        return new SolveResult(SolveResult.Status.SOLVED, s, race.myNodes.get(), elapsed, null);
+    }
+
+    /**
+     * What every branch of one solve shares: its limits, the token that stops them all, and
+     * what they did
+     */
+    private static final class Race {
+        private final SolveOptions myOptions;
+        private final long myStart;
+        /** Cancelled by the first branch to find a solution, or with the token of the options */
+        private final CancellationToken myToken;
+        private final AtomicLong myNodes = new AtomicLong();
+        private final AtomicReference<SolveResult.Status> myStopReason = new AtomicReference<>();
+
+        Race(SolveOptions options, long start){
+            myOptions = options;
+            myStart = start;
+            myToken = new CancellationToken(options.getToken());
+        }
+
+        /**
+         * @return a context for one branch's search, whose timeout ends when the solve's does
+         */
+        SearchContext context(SearchStrategy strategy){
+            SolveOptions options = myOptions.withToken(myToken);
+            if (myOptions.getTimeoutNanos() >= 0){
+                long remaining = myOptions.getTimeoutNanos()-(System.nanoTime()-myStart);
+                options = options.withTimeout(Math.max(remaining, 0), TimeUnit.NANOSECONDS);
+            }
+            return new SearchContext(strategy, null, options);
+        }
+
+        /**
+         * Account for the nodes of a branch, and why its search stopped if a limit ran out
+         */
+        void finish(SearchContext context){
+            myNodes.addAndGet(context.getNodes());
+            // Branches stopped because another found a solution also report CANCELLED, but then
+            // the solution is what the solve returns
+            if (context.getStopReason() != null) myStopReason.compareAndSet(null, context.getStopReason());
+        }
+    }
+
+    /**
+     * One subtree of the search, owning its own copy of the Sudoku and its own strategy, since
+     * a random strategy keeps the state of its generator
+     */
+    private static final class Branch extends RecursiveTask<Sudoku> {
+        private static final long serialVersionUID = 1L;
+
+        private final Sudoku mySudoku;
+        private final SearchStrategy myStrategy;
+        private final Race myRace;
+        private final int mySplitDepth;
+
+        Branch(Sudoku s, SearchStrategy strategy, Race race, int splitDepth){
+            mySudoku = s;
+            myStrategy = strategy;
+            myRace = race;
+            mySplitDepth = splitDepth;
+        }
+
+        protected Sudoku compute(){
+            SearchContext context = myRace.context(myStrategy);
+            Sudoku solution = null;
+            if (context.visit()){
+                solution = mySplitDepth == 0 ? SudokuSolver.backTracking(mySudoku, 0, context) : split();
+            }
+            myRace.finish(context);
+            // The first branch to succeed stops all the others
+            if (solution != null) myRace.myToken.cancel();
+            return solution;
+        }
+
+        /**
+         * Branch on one cell, one task per candidate that survives propagation
+         */
+        private Sudoku split(){
+            int idx = myStrategy.selectCell(mySudoku, 0);
+            if (idx == -1) return mySudoku;
+            List<Branch> branches = new ArrayList<>();
+            for (int remaining=mySudoku.getMask(idx); remaining!=0; ){
+                int value = myStrategy.selectValue(mySudoku, idx, remaining);
+                remaining &= ~Sudoku.bit(value);
+                Sudoku child = new Sudoku(mySudoku);
+                child.assign(idx, value);
+                if (SudokuSolver.propagate(child)) branches.add(new Branch(child, myStrategy.split(), myRace, mySplitDepth-1));
+            }
+            // Run the last branch here and leave the others to be stolen
+            for (int i=0; i<branches.size()-1; i++) branches.get(i).fork();
+            Sudoku solution = null;
+            for (int i=branches.size()-1; i>=0; i--){
+                Sudoku result = i == branches.size()-1 ? branches.get(i).compute() : branches.get(i).join();
+                if (solution == null) solution = result;
+            }
+            return solution;
+        }
+    }
+}
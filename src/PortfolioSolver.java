@@ -0,0 +1,288 @@
+import java.util.*;
+import java.util.concurrent.*;
+
+/**
+ * Races differently configured searches on one puzzle, one thread each, and keeps the first that
+ * settles it. Search times on hard variants are heavy-tailed and depend on the branching order,
+ * so a portfolio of orders, seeds and restart schedules stalls far less often than any one of
+ * them. Wins are counted per configuration, so the defaults can be tuned from real puzzles.
+ */
+public final class PortfolioSolver implements AutoCloseable {
+    /** Orders, seeds and restart schedules raced when none are given */
+    public static final List<Config> DEFAULT = Collections.unmodifiableList(Arrays.asList(
+            new Config("mrv", SearchStrategy.CellOrder.MRV, SearchStrategy.ValueOrder.ASCENDING, 0, 0, null),
+            new Config("mrv-lcv", SearchStrategy.CellOrder.MRV, SearchStrategy.ValueOrder.LCV, 0, 0, null),
+            new Config("mrv-random-luby", SearchStrategy.CellOrder.MRV, SearchStrategy.ValueOrder.RANDOM, 1, 64, null),
+            new Config("logic-random-luby", SearchStrategy.CellOrder.MRV, SearchStrategy.ValueOrder.RANDOM, 2, 16, Deductions.ALL)));
+
+    private final List<Config> myConfigs;
+    private final ExecutorService myThreads;
+    private final Map<String, Long> myWins = new ConcurrentHashMap<>();
+
+    /**
+     * A portfolio of the default configurations
+     */
+    public PortfolioSolver(){
+        this(DEFAULT);
+    }
+
+    /**
+     * @param configs the configurations to race, one thread each
+     */
+    public PortfolioSolver(List<Config> configs){
+        if (configs.isEmpty()) throw new IllegalArgumentException("A portfolio needs at least one configuration");
+        myConfigs = new ArrayList<>(configs);
+        myThreads = Executors.newFixedThreadPool(configs.size(), runnable -> {
+            Thread thread = new Thread(runnable, "portfolio-solver");
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    /**
+     * @return the configurations raced
+     */
+    public List<Config> getConfigs(){
+        return Collections.unmodifiableList(myConfigs);
+    }
+
+    /**
+     * @return how many solves each configuration won, keyed by name
+     */
+    public Map<String, Long> getWins(){
+        return new TreeMap<>(myWins);
+    }
+
+    /**
+     * Solve a Sudoku with no limits
+     * @param s the Sudoku, filled in with the solution if there is one
+     * @return how the race ended and which configuration won it
+     */
+    public Result solve(Sudoku s){
+        return solve(s, SolveOptions.DEFAULT);
+    }
+
+    /**
+     * Solve a Sudoku, stopping every search as soon as one finds a solution or proves there is none
+     * @param s the Sudoku, filled in with the solution if there is one
+     * @param options the timeout and token of the whole race, and the node limit of each
+     * configuration; their strategy and deductions are replaced by each configuration's own
+     * @return how the race ended and which configuration won it
+     */
+    public Result solve(Sudoku s, SolveOptions options){
+        long start = System.nanoTime();
+        if (!SudokuSolver.prune(s)){
+            return new Result(null, new SolveResult(SolveResult.Status.UNSOLVABLE, null, 0, System.nanoTime()-start, null));
+        }
+        CancellationToken race = new CancellationToken(options.getToken());
+        CompletionService<Run> runs = new ExecutorCompletionService<>(myThreads);
+        for (Config config : myConfigs){
+            Sudoku copy = new Sudoku(s);
+            runs.submit(() -> run(config, copy, options, race, start));
+        }
+
+        Run winner = null;
+        long nodes = 0;
+        try{
+            for (int i=0; i<myConfigs.size() && winner == null; i++){
+                Run run = runs.take().get();
+                nodes += run.myNodes;
+                if (run.myStatus == SolveResult.Status.SOLVED || run.myStatus == SolveResult.Status.UNSOLVABLE) winner = run;
+            }
+        }
+        catch (InterruptedException e){
+            Thread.currentThread().interrupt();
+        }
+        catch (ExecutionException e){
+            throw new IllegalStateException("Portfolio search failed", e.getCause());
+        }
+        finally{
+            // The others stop at their next node
+            race.cancel();
+        }
+
+        long elapsed = System.nanoTime()-start;
+        if (winner == null){
+            // Every search ran out of time or nodes, or the solve was cancelled
+            boolean cancelled = Thread.currentThread().isInterrupted() || (options.getToken() != null && options.getToken().isCancelled());
+            SolveResult.Status status = cancelled ? SolveResult.Status.CANCELLED : SolveResult.Status.BUDGET_EXHAUSTED;
+            return new Result(null, new SolveResult(status, null, nodes, elapsed, null));
+        }
+        myWins.merge(winner.myConfig.getName(), 1L, Long::sum);
+        Sudoku solution = null;
+        if (winner.mySolution != null){
+            for (int i=0; i<s.getCellCount(); i++){
+                if (s.getCell(i) == 0) s.assign(i, winner.mySolution.getCell(i));
+            }
+            solution = s;
+        }
+        return new Result(winner.myConfig, new SolveResult(winner.myStatus, solution, winner.myNodes, elapsed, null));
+    }
+
+    /**
+     * Stop the portfolio's threads; searches still running stop at their next node
+     */
+    public void close(){
+        myThreads.shutdownNow();
+    }
+
+    /**
+     * One configuration's search, restarted with a new seed each time its restart budget runs out
+     * @param s a pruned copy of the Sudoku, owned by this search
+     */
+    private static Run run(Config config, Sudoku s, SolveOptions options, CancellationToken race, long start){
+        long nodes = 0;
+        for (int restart=1; ; restart++){
+            long limit = options.getNodeLimit()-nodes;
+            long budget = config.getRestartNodes() == 0 ? limit : Math.min(limit, luby(restart)*config.getRestartNodes());
+            SolveOptions runOptions = options.withNodeLimit(Math.max(budget, 0)).withToken(race).withDeductions(config.getDeductions());
+            if (options.getTimeoutNanos() >= 0){
+                runOptions = runOptions.withTimeout(Math.max(options.getTimeoutNanos()-(System.nanoTime()-start), 0), TimeUnit.NANOSECONDS);
+            }
+            SearchContext context = new SearchContext(config.getStrategy(restart), null, runOptions);
+            Sudoku solution = SudokuSolver.backTracking(s, 0, context);
+            nodes += context.getNodes();
+            SolveResult.Status reason = context.getStopReason();
+            if (solution != null) return new Run(config, SolveResult.Status.SOLVED, solution, nodes);
+            if (reason == null) return new Run(config, SolveResult.Status.UNSOLVABLE, null, nodes);
+            // Only the restart budget ran out, not the node limit or timeout of the solve
+            boolean restartOver = reason == SolveResult.Status.BUDGET_EXHAUSTED && budget < limit && context.getNodes() > budget;
+            if (!restartOver) return new Run(config, reason, null, nodes);
+        }
+    }
+
+    /**
+     * @param i the position in the sequence, from 1
+     * @return the i-th term of the Luby sequence 1, 1, 2, 1, 1, 2, 4, 1, 1, 2, 1, 1, 2, 4, 8, ...
+     */
+    static long luby(int i){
+        while (true){
+            // The sequence up to position 2^k-1 ends with 2^(k-1) and repeats itself before that
+            int k = 32-Integer.numberOfLeadingZeros(i);
+            if (i == (1 << k)-1) return 1L << (k-1);
+            i -= (1 << (k-1))-1;
+        }
+    }
+
+    /**
+     * One way of running the search: its branching heuristics, deductions and restart schedule
+     */
+    public static final class Config {
+        private final String myName;
+        private final SearchStrategy.CellOrder myCellOrder;
+        private final SearchStrategy.ValueOrder myValueOrder;
+        private final long mySeed;
+        private final long myRestartNodes;
+        private final Deductions myDeductions;
+
+        /**
+         * @param name the name wins are counted under
+         * @param cellOrder how the next cell is picked
+         * @param valueOrder how candidates are ordered
+         * @param seed seed of a random value order, each restart draws a new one from it
+         * @param restartNodes nodes of the first run of a Luby restart schedule, later runs are
+         * that many times the next term of the sequence; 0 for no restarts
+         * @param deductions techniques run before each branch, null for none
+         */
+        public Config(String name, SearchStrategy.CellOrder cellOrder, SearchStrategy.ValueOrder valueOrder, long seed,
+                      long restartNodes, Deductions deductions){
+            if (restartNodes < 0) throw new IllegalArgumentException("Restart nodes must not be negative: " + restartNodes);
+            myName = name;
+            myCellOrder = cellOrder;
+            myValueOrder = valueOrder;
+            mySeed = seed;
+            myRestartNodes = restartNodes;
+            myDeductions = deductions;
+        }
+
+        /**
+         * @return the name wins are counted under
+         */
+        public String getName(){
+            return myName;
+        }
+
+        /**
+         * @return nodes of the first run of the restart schedule, 0 for no restarts
+         */
+        public long getRestartNodes(){
+            return myRestartNodes;
+        }
+
+        /**
+         * @return techniques run before each branch, null for none
+         */
+        public Deductions getDeductions(){
+            return myDeductions;
+        }
+
+        /**
+         * @param restart the run of the restart schedule, from 1
+         * @return the strategy of that run, a fresh one since random strategies keep state
+         */
+        SearchStrategy getStrategy(int restart){
+            if (myValueOrder != SearchStrategy.ValueOrder.RANDOM) return new SearchStrategy(myCellOrder, myValueOrder);
+            return new SearchStrategy(myCellOrder, myValueOrder, mySeed*31 + restart);
+        }
+
+        /**
+         * @return String representation of the configuration
+         */
+        public String toString(){
+            return myName + "(" + myCellOrder + "/" + myValueOrder + (myRestartNodes > 0 ? ", luby " + myRestartNodes : "")
+                    + (myDeductions != null ? ", " + myDeductions : "") + ")";
+        }
+    }
+
+    /**
+     * How a race ended and which configuration settled it
+     */
+    public static final class Result {
+        private final Config myWinner;
+        private final SolveResult myResult;
+
+        Result(Config winner, SolveResult result){
+            myWinner = winner;
+            myResult = result;
+        }
+
+        /**
+         * @return the configuration that found the solution or proved there is none, null if
+         * pruning settled it or no search finished
+         */
+        public Config getWinner(){
+            return myWinner;
+        }
+
+        /**
+         * @return how the race ended, with the winner's solution and node count
+         */
+        public SolveResult getResult(){
+            return myResult;
+        }
+
+        /**
+         * @return String representation of the result
+         */
+        public String toString(){
+            return myResult + (myWinner != null ? " by " + myWinner.getName() : "");
+        }
+    }
+
+    /**
+     * How one configuration's search ended
+     */
+    private static final class Run {
+        private final Config myConfig;
+        private final SolveResult.Status myStatus;
+        private final Sudoku mySolution;
+        private final long myNodes;
+
+        Run(Config config, SolveResult.Status status, Sudoku solution, long nodes){
+            myConfig = config;
+            myStatus = status;
+            mySolution = solution;
+            myNodes = nodes;
+        }
+    }
+}
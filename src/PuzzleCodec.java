@@ -0,0 +1,384 @@
+import java.io.*;
+import java.nio.*;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.*;
+import java.util.*;
+
+/**
+ * Compact binary form of puzzles and their rules. A file is the magic "SDKB" and a version byte,
+ * then one record per puzzle, all numbers big-endian:
+ *
+ *   u8 size             4, 9, 16 or 25
+ *   u16 rulesLength     bytes of the rule sections that follow
+ *   rule sections       u8 type, then for rules with entries a u16 entry count and the entries
+ *   grid                two cells per byte, high nibble first, for sizes below 16; otherwise
+ *                       one byte per cell; 0 for an empty cell
+ *
+ * Entries by rule type: thermo, arrow and palindrome are a u8 length and that many u16 cells;
+ * xv is a u8 sum and two u16 cells; kropki a u8 dot type and two u16 cells; sandwich a u8 line
+ * and a u8 sum. normal, diagonal, disjoint, knight, king, nonconsecutive and negativekropki have
+ * no entries. Sections are written in type order, so equal rule sets have equal bytes.
+ *
+ * A RecordReader decodes records straight from a heap or memory-mapped buffer: the grid is
+ * unpacked into the Sudoku it hands out, and the rule bytes are compared in place against the rule
+ * sets already seen, so rule lists are only built and compiled once per distinct rule set.
+ */
+public final class PuzzleCodec {
+    /** "SDKB" */
+    public static final int MAGIC = 0x53444B42;
+    /** Version of the format written, the only one read */
+    public static final int VERSION = 1;
+
+    /** Rule names by type byte */
+    private static final String[] TYPES = {"normal", "diagonal", "disjoint", "knight", "king",
+            "nonconsecutive", "negativekropki", "thermo", "arrow", "palindrome", "xv", "kropki", "sandwich"};
+    private static final int THERMO = 7;
+    private static final int XV = 10;
+    private static final int SANDWICH = 12;
+
+    private PuzzleCodec(){
+    }
+
+    /**
+     * Usage: PuzzleCodec input output converts the text form to the binary form, PuzzleCodec -d
+     * input output back. The text form has rule lines as RuleParser reads them and puzzle lines as
+     * cellParser reads them; each puzzle follows the rules above it, normal if there are none,
+     * and rule lines after a puzzle start a new rule set.
+     */
+    public static void main(String[] args) throws IOException {
+        boolean decode = args.length == 3 && args[0].equals("-d");
+        if (args.length != 2 && !decode){
+            System.err.println("Usage: PuzzleCodec [-d] input output");
+            System.exit(2);
+        }
+        Path input = Paths.get(args[decode ? 1 : 0]);
+        Path output = Paths.get(args[decode ? 2 : 1]);
+        long start = System.nanoTime();
+        long count = decode ? toText(input, output) : toBinary(input, output);
+        System.err.printf("Converted %d puzzles in %.3f s%n", count, (System.nanoTime()-start)/1e9);
+    }
+
+    /**
+     * Convert a file from the text form to the binary form
+     * @return the number of puzzles written
+     */
+    public static long toBinary(Path input, Path output) throws IOException {
+        try (BufferedReader in = Files.newBufferedReader(input, StandardCharsets.UTF_8);
+             RecordWriter out = new RecordWriter(new BufferedOutputStream(Files.newOutputStream(output), 1 << 16))){
+            Map<String, List<List<Integer>>> rules = new LinkedHashMap<>();
+            boolean newRules = true;
+            long lineNumber = 0;
+            for (String line; (line = in.readLine()) != null; ){
+                lineNumber++;
+                line = line.trim();
+                try {
+                    if (SudokuSolver.isGridLine(line)){
+                        if (rules.isEmpty()) rules.put("normal", null);
+                        out.write(SudokuSolver.cellParser(line), rules);
+                        newRules = true;
+                    }
+                    else if (!line.isEmpty() && !line.startsWith("#")){
+                        if (newRules) rules = new LinkedHashMap<>();
+                        newRules = false;
+                        RuleParser.parseLine(line, rules);
+                    }
+                }
+                catch (IllegalArgumentException e){
+                    throw new IOException("Line " + lineNumber + ": " + e.getMessage(), e);
+                }
+            }
+            return out.getRecords();
+        }
+    }
+
+    /**
+     * Convert a file from the binary form to the text form, writing the rules whenever they change
+     * @return the number of puzzles read
+     */
+    public static long toText(Path input, Path output) throws IOException {
+        try (Writer out = Files.newBufferedWriter(output, StandardCharsets.UTF_8)){
+            RecordReader reader = open(input);
+            ConstraintGraph previous = null;
+            long count = 0;
+            while (reader.hasNext()){
+                Sudoku s = reader.next();
+                if (s.getConstraintGraph() != previous){
+                    previous = s.getConstraintGraph();
+                    out.write(RuleParser.format(previous.getRules()));
+                }
+                out.write(SudokuSolver.cellFormat(s));
+                out.write('\n');
+                count++;
+            }
+            return count;
+        }
+    }
+
+    /**
+     * Map a binary file into memory for reading
+     * @param path a file of at most 2 GB in the binary form
+     * @return a reader of its records
+     */
+    public static RecordReader open(Path path) throws IOException {
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)){
+            if (channel.size() > Integer.MAX_VALUE) throw new IOException(path + " is over 2 GB");
+            return new RecordReader(channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size()));
+        }
+    }
+
+    /**
+     * Encode the rule sections of a rule set
+     * @param rules the rules, every name one the format has a type for
+     * @return the sections, in type order
+     */
+    public static byte[] encodeRules(Map<String, List<List<Integer>>> rules){
+        for (String name : rules.keySet()){
+            if (type(name) == -1) throw new IllegalArgumentException("No binary form for rule " + name);
+        }
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        DataOutputStream out = new DataOutputStream(bytes);
+        try {
+            for (int type=0; type<TYPES.length; type++){
+                if (!rules.containsKey(TYPES[type])) continue;
+                out.writeByte(type);
+                if (type < THERMO) continue;
+                List<List<Integer>> entries = rules.get(TYPES[type]);
+                if (entries == null) entries = Collections.emptyList();
+                if (entries.size() > 0xFFFF) throw new IllegalArgumentException("Too many " + TYPES[type] + " entries: " + entries.size());
+                out.writeShort(entries.size());
+                for (List<Integer> entry : entries) writeEntry(out, type, entry);
+            }
+        }
+        catch (IOException e){
+            throw new UncheckedIOException(e);
+        }
+        if (bytes.size() > 0xFFFF) throw new IllegalArgumentException("Rules take over 65535 bytes");
+        return bytes.toByteArray();
+    }
+
+    private static void writeEntry(DataOutputStream out, int type, List<Integer> entry) throws IOException {
+        String name = TYPES[type];
+        if (type < XV){
+            if (entry.size() > 0xFF) throw new IllegalArgumentException("A " + name + " has over 255 cells: " + entry);
+            out.writeByte(entry.size());
+            for (int cell : entry) out.writeShort(checked(cell, 0xFFFF, entry));
+        }
+        else if (type == SANDWICH){
+            if (entry.size() != 2) throw new IllegalArgumentException("Sandwich rules are (line, sum) pairs: " + entry);
+            out.writeByte(checked(entry.get(0), 0xFF, entry));
+            out.writeByte(checked(entry.get(1), 0xFF, entry));
+        }
+        else{
+            if (entry.size() != 3) throw new IllegalArgumentException("A " + name + " rule is a value and two cells: " + entry);
+            out.writeByte(checked(entry.get(0), 0xFF, entry));
+            out.writeShort(checked(entry.get(1), 0xFFFF, entry));
+            out.writeShort(checked(entry.get(2), 0xFFFF, entry));
+        }
+    }
+
+    private static int checked(int value, int max, List<Integer> entry){
+        if (value < 0 || value > max) throw new IllegalArgumentException("Entry " + entry + " does not fit the binary form");
+        return value;
+    }
+
+    /**
+     * Decode rule sections back into the form Sudoku and ConstraintGraph take
+     * @param buffer the buffer, read from its position
+     * @param length bytes of rule sections
+     * @return the rules
+     */
+    public static Map<String, List<List<Integer>>> decodeRules(ByteBuffer buffer, int length){
+        int end = buffer.position() + length;
+        Map<String, List<List<Integer>>> rules = new LinkedHashMap<>();
+        while (buffer.position() < end){
+            int type = buffer.get() & 0xFF;
+            if (type >= TYPES.length) throw new IllegalArgumentException("Unknown rule type " + type);
+            if (type < THERMO){
+                rules.put(TYPES[type], null);
+                continue;
+            }
+            int count = buffer.getShort() & 0xFFFF;
+            List<List<Integer>> entries = new ArrayList<>(count);
+            for (int e=0; e<count; e++){
+                List<Integer> entry = new ArrayList<>();
+                if (type < XV){
+                    int cells = buffer.get() & 0xFF;
+                    for (int k=0; k<cells; k++) entry.add(buffer.getShort() & 0xFFFF);
+                }
+                else if (type == SANDWICH){
+                    entry.add(buffer.get() & 0xFF);
+                    entry.add(buffer.get() & 0xFF);
+                }
+                else{
+                    entry.add(buffer.get() & 0xFF);
+                    entry.add(buffer.getShort() & 0xFFFF);
+                    entry.add(buffer.getShort() & 0xFFFF);
+                }
+                entries.add(entry);
+            }
+            rules.put(TYPES[type], entries);
+        }
+        if (buffer.position() != end) throw new IllegalArgumentException("Rule sections overrun their length");
+        return rules;
+    }
+
+    /**
+     * @return the type byte of a rule, -1 if the format has none
+     */
+    private static int type(String name){
+        for (int type=0; type<TYPES.length; type++){
+            if (TYPES[type].equals(name)) return type;
+        }
+        return -1;
+    }
+
+    /**
+     * @return bytes taken by the grid of a size
+     */
+    private static int gridBytes(int size){
+        int cells = size*size;
+        return size < 16 ? (cells+1)/2 : cells;
+    }
+
+    /**
+     * Writes records, encoding each distinct rule set once
+     */
+    public static final class RecordWriter implements Closeable {
+        private final DataOutputStream myOut;
+        private Map<String, List<List<Integer>>> myRules;
+        private byte[] myRuleBytes;
+        private long myRecords = 0;
+
+        /**
+         * @param out the stream to write to, starting with the file header
+         */
+        public RecordWriter(OutputStream out) throws IOException {
+            myOut = new DataOutputStream(out);
+            myOut.writeInt(MAGIC);
+            myOut.writeByte(VERSION);
+        }
+
+        /**
+         * Write one record
+         * @param cells the puzzle cells, 0 for an empty cell
+         * @param rules the rules of the puzzle
+         */
+        public void write(int[] cells, Map<String, List<List<Integer>>> rules) throws IOException {
+            int size = Sudoku.sizeOf(cells.length);
+            if (!rules.equals(myRules)){
+                myRuleBytes = encodeRules(rules);
+                myRules = new LinkedHashMap<>(rules);
+            }
+            myOut.writeByte(size);
+            myOut.writeShort(myRuleBytes.length);
+            myOut.write(myRuleBytes);
+            byte[] grid = new byte[gridBytes(size)];
+            for (int i=0; i<cells.length; i++){
+                int value = cells[i];
+                if (value < 0 || value > size) throw new IllegalArgumentException("Digits of a " + size + "x" + size + " grid are 1 to " + size + ": " + value);
+                if (size < 16) grid[i/2] |= (byte) (i%2 == 0 ? value << 4 : value);
+                else grid[i] = (byte) value;
+            }
+            myOut.write(grid);
+            myRecords++;
+        }
+
+        /**
+         * @return the number of records written
+         */
+        public long getRecords(){
+            return myRecords;
+        }
+
+        public void close() throws IOException {
+            myOut.close();
+        }
+    }
+
+    /**
+     * Reads records in order from a buffer. Each rule set gets one compiled graph and one Sudoku
+     * that every record with those rules is loaded into, so a Sudoku handed out is only valid
+     * until the next record with the same rules is read.
+     */
+    public static final class RecordReader {
+        private final ByteBuffer myBuffer;
+        /** Rule sets seen so far, keyed by their size byte and rule sections */
+        private final Map<ByteBuffer, Entry> myEntries = new HashMap<>();
+
+        /**
+         * @param buffer the binary form from its position on, header first; it is read in place
+         */
+        public RecordReader(ByteBuffer buffer){
+            myBuffer = buffer.slice().order(ByteOrder.BIG_ENDIAN);
+            if (myBuffer.remaining() < 5 || myBuffer.getInt() != MAGIC) throw new IllegalArgumentException("Not a binary puzzle file");
+            int version = myBuffer.get() & 0xFF;
+            if (version != VERSION) throw new IllegalArgumentException("Unsupported version " + version + ", expected " + VERSION);
+        }
+
+        /**
+         * @return true iff another record follows
+         */
+        public boolean hasNext(){
+            return myBuffer.hasRemaining();
+        }
+
+        /**
+         * Decode the next record
+         * @return a Sudoku holding the puzzle and its rules, reused as described above
+         */
+        public Sudoku next(){
+            if (!hasNext()) throw new NoSuchElementException();
+            int start = myBuffer.position();
+            try {
+                int size = myBuffer.get() & 0xFF;
+                int rulesLength = myBuffer.getShort() & 0xFFFF;
+                int end = myBuffer.position() + rulesLength;
+                // The key is a view of the record, only copied when a new rule set is stored
+                ByteBuffer key = myBuffer.duplicate();
+                key.position(start).limit(end);
+                Entry entry = myEntries.get(key);
+                if (entry == null){
+                    ByteBuffer copy = ByteBuffer.allocate(end-start).put(key.duplicate());
+                    copy.flip();
+                    entry = new Entry(ConstraintGraph.compile(decodeRules(myBuffer, rulesLength), size));
+                    myEntries.put(copy, entry);
+                }
+                myBuffer.position(end);
+
+                int[] cells = entry.myCells;
+                if (size < 16){
+                    for (int i=0; i<cells.length; i+=2){
+                        int packed = myBuffer.get();
+                        cells[i] = packed >> 4 & 0xF;
+                        if (i+1 < cells.length) cells[i+1] = packed & 0xF;
+                    }
+                }
+                else{
+                    for (int i=0; i<cells.length; i++) cells[i] = myBuffer.get() & 0xFF;
+                }
+                for (int value : cells){
+                    if (value > size) throw new IllegalArgumentException("Digit " + value + " in a " + size + "x" + size + " grid");
+                }
+                entry.mySudoku.load(cells, 0);
+                return entry.mySudoku;
+            }
+            catch (BufferUnderflowException e){
+                throw new IllegalArgumentException("Truncated record at byte " + start);
+            }
+        }
+    }
+
+    /**
+     * A compiled rule set with the Sudoku and cells its records are decoded into
+     */
+    private static final class Entry {
+        private final Sudoku mySudoku;
+        private final int[] myCells;
+
+        Entry(ConstraintGraph graph){
+            myCells = new int[graph.getCellCount()];
+            mySudoku = new Sudoku(new int[graph.getCellCount()], graph);
+        }
+    }
+}
@@ -0,0 +1,83 @@
+import java.util.*;
+
+/**
+ * Text form of a rule set, one rule per line: the rule name, then each of its entries as a
+ * comma-separated list of integers, e.g.
+ *
+ *   normal
+ *   thermo 0,10,20,30 8,16,24
+ *   xv 5,0,9 10,1,2
+ *
+ * A rule without entries maps to null, as in Examples; a rule given on several lines collects
+ * the entries of all of them. Blank lines and lines starting with '#' are skipped.
+ */
+public final class RuleParser {
+    private RuleParser(){
+    }
+
+    /**
+     * @param lines rule lines
+     * @return the rules, in the form Sudoku and ConstraintGraph take
+     */
+    public static Map<String, List<List<Integer>>> parse(Iterable<String> lines){
+        Map<String, List<List<Integer>>> rules = new LinkedHashMap<>();
+        for (String line : lines) parseLine(line, rules);
+        return rules;
+    }
+
+    /**
+     * Add the rule on one line to a rule set
+     * @param line a rule line
+     * @param rules the rules to add it to
+     */
+    public static void parseLine(String line, Map<String, List<List<Integer>>> rules){
+        line = line.trim();
+        if (line.isEmpty() || line.startsWith("#")) return;
+        String[] tokens = line.split("\\s+");
+        String name = tokens[0];
+        if (!name.matches("[a-z]+")) throw new IllegalArgumentException("Rule names are lowercase letters: " + name);
+        if (tokens.length == 1){
+            rules.putIfAbsent(name, null);
+            return;
+        }
+        List<List<Integer>> entries = rules.get(name);
+        if (entries == null){
+            entries = new ArrayList<>();
+            rules.put(name, entries);
+        }
+        for (int t=1; t<tokens.length; t++){
+            List<Integer> entry = new ArrayList<>();
+            for (String number : tokens[t].split(",")){
+                try {
+                    entry.add(Integer.parseInt(number));
+                }
+                catch (NumberFormatException e){
+                    throw new IllegalArgumentException("Rule " + name + " has a malformed entry: " + tokens[t]);
+                }
+            }
+            entries.add(entry);
+        }
+    }
+
+    /**
+     * @param rules a rule set
+     * @return its text form, one line per rule
+     */
+    public static String format(Map<String, List<List<Integer>>> rules){
+        StringBuilder out = new StringBuilder();
+        for (Map.Entry<String, List<List<Integer>>> rule : rules.entrySet()){
+            out.append(rule.getKey());
+            if (rule.getValue() != null){
+                for (List<Integer> entry : rule.getValue()){
+                    out.append(' ');
+                    for (int i=0; i<entry.size(); i++){
+                        if (i > 0) out.append(',');
+                        out.append(entry.get(i));
+                    }
+                }
+            }
+            out.append('\n');
+        }
+        return out.toString();
+    }
+}
@@ -0,0 +1,175 @@
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * The digits between the 1 and the largest digit (the 9 of a 9x9 grid) of a row or column sum
+ * to a given total
+ */
+public class SandwichConstraint extends Constraint {
+    /** Largest grid with sandwich rules, whose fillings are still few enough to tabulate */
+    public static final int MAX_SIZE = 16;
+
+    /** For each grid size, the sets of the digits strictly between the crusts by sum and size */
+    private static final Map<Integer, int[][][]> FILLINGS = new ConcurrentHashMap<>();
+    /**
+     * Masks and supported candidates of a line, kept per thread since compiled rules are shared
+     * between solver threads
+     */
+    private static final ThreadLocal<int[][]> SCRATCH = ThreadLocal.withInitial(() -> new int[2][MAX_SIZE]);
+
+    private final int mySize;
+    private final int myLine;
+    private final int mySum;
+    private final int[][] myFillings;
+
+    /**
+     * @param size the grid size
+     * @param line 1 to size for the columns, size+1 to 2*size for the rows
+     * @param sum the total of the digits between the crusts
+     */
+    public SandwichConstraint(int size, int line, int sum){
+        super(lineCells(size, line));
+        if (sum < 0 || sum > maxSum(size)) throw new IllegalArgumentException("Sandwich sum must be 0 to " + maxSum(size) + ": " + sum);
+        mySize = size;
+        myLine = line;
+        mySum = sum;
+        myFillings = FILLINGS.computeIfAbsent(size, SandwichConstraint::fillings)[sum];
+    }
+
+    /**
+     * @param size the grid size
+     * @return the largest possible sandwich, 2+3+...+(size-1)
+     */
+    public static int maxSum(int size){
+        return (size-1)*size/2 - 1;
+    }
+
+    /**
+     * @param size the grid size
+     * @return the sets of the digits 2 to size-1 as candidate masks, indexed by sum then size
+     */
+    private static int[][][] fillings(int size){
+        List<List<List<Integer>>> fillings = new ArrayList<>();
+        for (int sum=0; sum<=maxSum(size); sum++){
+            List<List<Integer>> bySize = new ArrayList<>();
+            for (int count=0; count<size-1; count++) bySize.add(new ArrayList<>());
+            fillings.add(bySize);
+        }
+        // Every subset of the digits 2 to size-1
+        for (int subset=0; subset<(1 << (size-2)); subset++){
+            int mask = subset << 1;
+            int sum = 0;
+            for (int m=mask; m!=0; m&=m-1) sum += Sudoku.lowestDigit(m);
+            fillings.get(sum).get(Sudoku.bitCount(mask)).add(mask);
+        }
+        int[][][] table = new int[maxSum(size)+1][size-1][];
+        for (int sum=0; sum<=maxSum(size); sum++){
+            for (int count=0; count<size-1; count++){
+                table[sum][count] = Constraint.toArray(fillings.get(sum).get(count));
+            }
+        }
+        return table;
+    }
+
+    /**
+     * @param size the grid size
+     * @param line 1 to size for the columns, size+1 to 2*size for the rows
+     * @return the cells of the line
+     */
+    private static int[] lineCells(int size, int line){
+        if (size > MAX_SIZE) throw new IllegalArgumentException("Sandwich rules support grids up to " + MAX_SIZE + "x" + MAX_SIZE);
+        if (line < 1 || line > 2*size) throw new IllegalArgumentException("Sandwich line must be 1 to " + 2*size + ": " + line);
+        int[] cells = new int[size];
+        for (int k=0; k<size; k++){
+            cells[k] = line > size ? (line-size-1)*size+k : k*size+line-1;
+        }
+        return cells;
+    }
+
+    /**
+     * @return 1 to size for the columns, size+1 to 2*size for the rows
+     */
+    public int getLine(){
+        return myLine;
+    }
+
+    /**
+     * @return the total of the digits between the crusts
+     */
+    public int getSum(){
+        return mySum;
+    }
+
+    public String getRule(){
+        return "sandwich";
+    }
+
+    public boolean isValid(Sudoku s){
+        int one = -1;
+        int nine = -1;
+        for (int i=0; i<myCells.length; i++){
+            int value = s.getCell(myCells[i]);
+            if (value == 1) one = i;
+            if (value == mySize) nine = i;
+        }
+        if (one == -1 || nine == -1) return true;
+        // The placed digits between the crusts may not exceed the total, and must meet it once all are placed
+        int sum = 0;
+        boolean filled = true;
+        for (int i=Math.min(one, nine)+1; i<Math.max(one, nine); i++){
+            int value = s.getCell(myCells[i]);
+            sum += value;
+            filled &= value != 0;
+        }
+        return filled ? sum == mySum : sum <= mySum;
+    }
+
+    public boolean propagate(Sudoku s){
+        int ones = Sudoku.bit(1);
+        int nines = Sudoku.bit(mySize);
+        int length = myCells.length;
+        int[][] scratch = SCRATCH.get();
+        int[] masks = scratch[0];
+        int[] support = scratch[1];
+        for (int i=0; i<length; i++){
+            masks[i] = s.getMask(myCells[i]);
+            support[i] = 0;
+        }
+
+        // Try every placement of the crusts and every filling that fits between them
+        for (int one=0; one<length; one++){
+            if ((masks[one] & ones) == 0) continue;
+            for (int nine=0; nine<length; nine++){
+                if (nine == one || (masks[nine] & nines) == 0) continue;
+                int low = Math.min(one, nine);
+                int high = Math.max(one, nine);
+                for (int filling : myFillings[high-low-1]){
+                    int outside = s.getAllMask() & ~filling & ~ones & ~nines;
+                    boolean fits = true;
+                    for (int i=0; i<length && fits; i++){
+                        if (i == one || i == nine) continue;
+                        fits = (masks[i] & (low < i && i < high ? filling : outside)) != 0;
+                    }
+                    if (!fits) continue;
+                    support[one] |= ones;
+                    support[nine] |= nines;
+                    for (int i=0; i<length; i++){
+                        if (i == one || i == nine) continue;
+                        support[i] |= masks[i] & (low < i && i < high ? filling : outside);
+                    }
+                }
+            }
+        }
+
+        // Keep only the candidates used by some placement
+        for (int i=0; i<length; i++){
+            if (support[i] == 0) return false;
+            s.setMask(myCells[i], masks[i] & support[i]);
+        }
+        return true;
+    }
+
+    public String toString(){
+        return getRule() + "(" + myLine + "," + mySum + ")";
+    }
+}
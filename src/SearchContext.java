@@ -0,0 +1,133 @@
+/**
+ * State shared by every node of one search: its branching heuristics, the deductions it runs
+ * before each branch, where it records its counters, its limits, and whether it should stop
+ */
+public class SearchContext {
+    /** Nodes between checks of the clock and the interrupt flag */
+    private static final int CHECK_INTERVAL = 64;
+
+    private final SearchStrategy myStrategy;
+    private final SolverStats myStats;
+    private final Deductions myDeductions;
+    private final boolean myLimited;
+    private final long myDeadline;
+    private final boolean myHasDeadline;
+    private final long myNodeLimit;
+    private final CancellationToken myToken;
+    private volatile boolean myCancelled = false;
+    private long myNodes = 0;
+    private SolveResult.Status myStopReason = null;
+
+    /**
+     * @param strategy how cells and candidates are picked when branching
+     */
+    public SearchContext(SearchStrategy strategy){
+        this(strategy, null);
+    }
+
+    /**
+     * @param strategy how cells and candidates are picked when branching
+     * @param stats where the search records its counters, null to record nothing
+     */
+    public SearchContext(SearchStrategy strategy, SolverStats stats){
+        myStrategy = strategy;
+        myStats = stats;
+        myDeductions = null;
+        myLimited = false;
+        myDeadline = 0;
+        myHasDeadline = false;
+        myNodeLimit = Long.MAX_VALUE;
+        myToken = null;
+    }
+
+    /**
+     * A context enforcing the limits of a bounded solve, whose timeout starts now; limits are
+     * counted by one thread, so it must not be shared by parallel searches
+     * @param strategy how cells and candidates are picked when branching
+     * @param stats where the search records its counters, null to record nothing
+     * @param options the timeout, node limit, cancellation token and deductions of the search
+     */
+    public SearchContext(SearchStrategy strategy, SolverStats stats, SolveOptions options){
+        myStrategy = strategy;
+        myStats = stats;
+        myDeductions = options.getDeductions();
+        myLimited = true;
+        myHasDeadline = options.getTimeoutNanos() >= 0;
+        myDeadline = System.nanoTime() + Math.max(options.getTimeoutNanos(), 0);
+        myNodeLimit = options.getNodeLimit();
+        myToken = options.getToken();
+    }
+
+    /**
+     * @return how cells and candidates are picked when branching
+     */
+    public SearchStrategy getStrategy(){
+        return myStrategy;
+    }
+
+    /**
+     * @return where the search records its counters, null if it records nothing
+     */
+    public SolverStats getStats(){
+        return myStats;
+    }
+
+    /**
+     * @return the techniques run before each branch, null if there are none
+     */
+    public Deductions getDeductions(){
+        return myDeductions;
+    }
+
+    /**
+     * Ask every search sharing this context to stop at its next node
+     */
+    public void cancel(){
+        myCancelled = true;
+    }
+
+    /**
+     * @return true iff the search should stop
+     */
+    public boolean isCancelled(){
+        return myCancelled;
+    }
+
+    /**
+     * Count a search node, the root or one assignment tried, against the limits, stopping the
+     * search once one runs out
+     * @return true iff the search may go on
+     */
+    public boolean visit(){
+        if (myCancelled) return false;
+        if (!myLimited) return true;
+        long nodes = ++myNodes;
+        if (nodes > myNodeLimit) return stop(SolveResult.Status.BUDGET_EXHAUSTED);
+        if (myToken != null && myToken.isCancelled()) return stop(SolveResult.Status.CANCELLED);
+        if (nodes % CHECK_INTERVAL == 1){
+            if (Thread.currentThread().isInterrupted()) return stop(SolveResult.Status.CANCELLED);
+            if (myHasDeadline && System.nanoTime()-myDeadline >= 0) return stop(SolveResult.Status.BUDGET_EXHAUSTED);
+        }
+        return true;
+    }
+
+    /**
+     * @return the number of nodes counted by visit(), 0 unless the context has limits
+     */
+    public long getNodes(){
+        return myNodes;
+    }
+
+    /**
+     * @return why the search was stopped, null if no limit ran out
+     */
+    public SolveResult.Status getStopReason(){
+        return myStopReason;
+    }
+
+    private boolean stop(SolveResult.Status reason){
+        myStopReason = reason;
+        myCancelled = true;
+        return false;
+    }
+}
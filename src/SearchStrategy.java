@@ -0,0 +1,204 @@
+import java.util.SplittableRandom;
+
+/**
+ * Branching heuristics of the backtracking search: which empty cell to branch on, and in which
+ * order to try its candidates
+ */
+public final class SearchStrategy {
+    /**
+     * How the next cell to branch on is picked
+     */
+    public enum CellOrder {
+        /** First empty cell in row-major order */
+        ROW_MAJOR,
+        /** Cell with the fewest candidates, ties broken by the most empty cells it constrains */
+        MRV
+    }
+
+    /**
+     * How the candidates of a cell are ordered
+     */
+    public enum ValueOrder {
+        /** Smallest digit first */
+        ASCENDING,
+        /** Digit that removes the fewest candidates from the cell's peers first */
+        LCV,
+        /** Digits in a random order drawn from the strategy's seed */
+        RANDOM
+    }
+
+    /** Row-major cells, ascending digits */
+    public static final SearchStrategy ROW_MAJOR = new SearchStrategy(CellOrder.ROW_MAJOR, ValueOrder.ASCENDING);
+    /** Minimum remaining values with degree tie-break, ascending digits */
+    public static final SearchStrategy MRV = new SearchStrategy(CellOrder.MRV, ValueOrder.ASCENDING);
+    /** Minimum remaining values with degree tie-break, least-constraining digit first */
+    public static final SearchStrategy MRV_LCV = new SearchStrategy(CellOrder.MRV, ValueOrder.LCV);
+    /** Strategy used when none is given */
+    public static final SearchStrategy DEFAULT = MRV;
+
+    private final CellOrder myCellOrder;
+    private final ValueOrder myValueOrder;
+    private final SplittableRandom myRandom;
+    /** Digit to try first in each cell, 0 for none, e.g. a solution from before an edit */
+    private final int[] myHint;
+
+    /**
+     * @param cellOrder how the next cell is picked
+     * @param valueOrder how candidates are ordered
+     */
+    public SearchStrategy(CellOrder cellOrder, ValueOrder valueOrder){
+        this(cellOrder, valueOrder, valueOrder == ValueOrder.RANDOM ? new SplittableRandom() : null, null);
+    }
+
+    /**
+     * A strategy whose random choices are reproducible; it keeps the state of its random
+     * generator, so it must not be shared between searches running at the same time
+     * @param cellOrder how the next cell is picked
+     * @param valueOrder how candidates are ordered
+     * @param seed seed of the random value order
+     */
+    public SearchStrategy(CellOrder cellOrder, ValueOrder valueOrder, long seed){
+        this(cellOrder, valueOrder, new SplittableRandom(seed), null);
+    }
+
+    private SearchStrategy(CellOrder cellOrder, ValueOrder valueOrder, SplittableRandom random, int[] hint){
+        myCellOrder = cellOrder;
+        myValueOrder = valueOrder;
+        myRandom = valueOrder == ValueOrder.RANDOM ? random : null;
+        myHint = hint;
+    }
+
+    /**
+     * A strategy that tries a hinted digit first in each cell, where it is still a candidate,
+     * and falls back to this strategy's value order for the others; a random order keeps sharing
+     * this strategy's generator
+     * @param hint the digit to try first in each cell, 0 for none, not copied
+     * @return the hinted strategy
+     */
+    public SearchStrategy withHint(int[] hint){
+        return new SearchStrategy(myCellOrder, myValueOrder, myRandom, hint);
+    }
+
+    /**
+     * A strategy for a search running alongside this one: a random order gets a generator split
+     * off from this strategy's, the others keep no state and are shared
+     * @return the strategy for the other search
+     */
+    public SearchStrategy split(){
+        return myRandom == null ? this : new SearchStrategy(myCellOrder, myValueOrder, myRandom.split(), myHint);
+    }
+
+    /**
+     * @return how the next cell is picked
+     */
+    public CellOrder getCellOrder(){
+        return myCellOrder;
+    }
+
+    /**
+     * @return how candidates are ordered
+     */
+    public ValueOrder getValueOrder(){
+        return myValueOrder;
+    }
+
+    /**
+     * Pick the next cell to branch on
+     * @param s the Sudoku
+     * @param from every cell before this one is known to be filled, a hint for row-major order
+     * @return the cell index, or -1 if every cell is filled
+     */
+    public int selectCell(Sudoku s, int from){
+        if (myCellOrder == CellOrder.ROW_MAJOR){
+            int cells = s.getCellCount();
+            while (from < cells && s.getCell(from) != 0) from++;
+            return from == cells ? -1 : from;
+        }
+        int best = -1;
+        int bestCount = Integer.MAX_VALUE;
+        int bestDegree = -1;
+        for (int idx=0; idx<s.getCellCount(); idx++){
+            if (s.getCell(idx) != 0) continue;
+            int count = Sudoku.bitCount(s.getMask(idx));
+            if (count > bestCount) continue;
+            int degree = degree(s, idx);
+            if (count < bestCount || degree > bestDegree){
+                best = idx;
+                bestCount = count;
+                bestDegree = degree;
+            }
+        }
+        return best;
+    }
+
+    /**
+     * Pick the next candidate to try
+     * @param s the Sudoku
+     * @param idx the cell being branched on
+     * @param remaining the non-empty mask of candidates not tried yet
+     * @return the digit to try next
+     */
+    public int selectValue(Sudoku s, int idx, int remaining){
+        if (myHint != null && myHint[idx] != 0 && (remaining & Sudoku.bit(myHint[idx])) != 0) return myHint[idx];
+        if (myValueOrder == ValueOrder.ASCENDING) return Sudoku.lowestDigit(remaining);
+        if (myValueOrder == ValueOrder.RANDOM){
+            // Skip a random number of the remaining candidates
+            for (int skip=myRandom.nextInt(Sudoku.bitCount(remaining)); skip>0; skip--) remaining &= remaining-1;
+            return Sudoku.lowestDigit(remaining);
+        }
+        int best = 0;
+        int bestCost = Integer.MAX_VALUE;
+        for (int m=remaining; m!=0; m&=m-1){
+            int value = Sudoku.lowestDigit(m);
+            int cost = cost(s, idx, value);
+            if (cost < bestCost){
+                best = value;
+                bestCost = cost;
+            }
+        }
+        return best;
+    }
+
+    /**
+     * @return the number of empty cells that a digit in this cell would constrain
+     */
+    private static int degree(Sudoku s, int idx){
+        ConstraintGraph graph = s.getConstraintGraph();
+        int degree = 0;
+        for (int peer : graph.getPeers(idx)){
+            if (s.getCell(peer) == 0) degree++;
+        }
+        for (int neighbour : graph.getNeighbours(idx)){
+            if (s.getCell(neighbour) == 0) degree++;
+        }
+        for (Constraint constraint : graph.getConstraints(idx)){
+            degree += constraint.getCells().length-1;
+        }
+        return degree;
+    }
+
+    /**
+     * @return the number of candidates placing the digit would remove from empty peers and
+     * neighbours
+     */
+    private static int cost(Sudoku s, int idx, int value){
+        ConstraintGraph graph = s.getConstraintGraph();
+        int bit = Sudoku.bit(value);
+        int cost = 0;
+        for (int peer : graph.getPeers(idx)){
+            if (s.getCell(peer) == 0 && (s.getMask(peer) & bit) != 0) cost++;
+        }
+        int consecutive = (bit << 1 | bit >> 1) & s.getAllMask();
+        for (int neighbour : graph.getNeighbours(idx)){
+            if (s.getCell(neighbour) == 0) cost += Sudoku.bitCount(s.getMask(neighbour) & consecutive);
+        }
+        return cost;
+    }
+
+    /**
+     * @return String representation of the strategy
+     */
+    public String toString(){
+        return myCellOrder + "/" + myValueOrder;
+    }
+}
@@ -0,0 +1,290 @@
+import java.util.*;
+
+/**
+ * A cache of solved puzzles in front of SudokuSolver.solver that recognises a puzzle it has seen
+ * under a symmetry of the rules: rotated, reflected or transposed, with bands or stacks
+ * permuted, and with its digits relabelled.
+ *
+ * Only the symmetries the compiled rules keep are used. A grid transform is kept if it maps
+ * every cell's peers and nonconsecutive neighbours onto the peers and neighbours of the cell it
+ * lands on, so diagonal grids keep transposition but not band swaps, and knight or king grids
+ * keep only rotations and reflections; rules on fixed cell lists, such as thermometers, keep
+ * none. Relabelling is kept unless nonconsecutive or a constraint compares digit values.
+ *
+ * Each puzzle is reduced to the least of its images under those symmetries, its canonical form,
+ * which keys the cached solution; hits map the solution back onto the puzzle's own orientation
+ * and digits. The least recently used puzzles are evicted beyond a fixed number of entries.
+ */
+public final class SolutionCache {
+    /** Cached value of a puzzle with no solution */
+    private static final byte[] NO_SOLUTION = new byte[0];
+
+    private final ConstraintGraph myGraph;
+    private final int mySize;
+    private final int myCells;
+    private final int[][] myTransforms;
+    private final boolean myRelabeling;
+    private final Map<String, byte[]> myEntries;
+    private long myHits = 0;
+    private long myMisses = 0;
+
+    /**
+     * @param graph the compiled rules of every puzzle solved through the cache
+     * @param capacity the most puzzles kept
+     */
+    public SolutionCache(ConstraintGraph graph, int capacity){
+        if (capacity < 1) throw new IllegalArgumentException("Capacity must be at least 1: " + capacity);
+        myGraph = graph;
+        mySize = graph.getSize();
+        myCells = graph.getCellCount();
+        myTransforms = symmetries(graph);
+        boolean relabeling = true;
+        for (int idx=0; idx<myCells; idx++) relabeling &= graph.getNeighbours(idx).length == 0;
+        for (Constraint constraint : graph.getAllConstraints()) relabeling &= constraint.allowsRelabeling();
+        myRelabeling = relabeling;
+        myEntries = new LinkedHashMap<String, byte[]>(16, 0.75f, true){
+            protected boolean removeEldestEntry(Map.Entry<String, byte[]> eldest){
+                return size() > capacity;
+            }
+        };
+    }
+
+    /**
+     * Solve a Sudoku, from the cache if it holds the puzzle under some symmetry
+     * @param s the Sudoku, with the rules of the cache; filled in with the solution if there is one
+     * @return the completed Sudoku, null if it has no solution
+     */
+    public Sudoku solve(Sudoku s){
+        if (s.getConstraintGraph() != myGraph) throw new IllegalArgumentException("Sudoku has different rules from the cache");
+        Canonical canonical = canonicalize(s);
+        byte[] solution;
+        synchronized (this){
+            solution = myEntries.get(canonical.myKey);
+            if (solution != null) myHits++;
+            else myMisses++;
+        }
+        if (solution == NO_SOLUTION) return null;
+        if (solution != null){
+            // Undo the transform and the relabelling
+            for (int i=0; i<myCells; i++){
+                int idx = canonical.myTransform[i];
+                if (s.getCell(idx) == 0) s.assign(idx, canonical.myDigits[solution[i]]);
+            }
+            return s;
+        }
+
+        Sudoku solved = SudokuSolver.solver(s);
+        byte[] entry = NO_SOLUTION;
+        if (solved != null){
+            entry = new byte[myCells];
+            for (int i=0; i<myCells; i++) entry[i] = (byte) canonical.myLabels[s.getCell(canonical.myTransform[i])];
+        }
+        synchronized (this){
+            myEntries.put(canonical.myKey, entry);
+        }
+        return solved;
+    }
+
+    /**
+     * @return the number of solves answered from the cache
+     */
+    public synchronized long getHits(){
+        return myHits;
+    }
+
+    /**
+     * @return the number of solves that had to run the solver
+     */
+    public synchronized long getMisses(){
+        return myMisses;
+    }
+
+    /**
+     * @return the fraction of solves answered from the cache, 0 before the first solve
+     */
+    public synchronized double getHitRate(){
+        long total = myHits + myMisses;
+        return total == 0 ? 0 : (double) myHits/total;
+    }
+
+    /**
+     * @return the number of puzzles held
+     */
+    public synchronized int size(){
+        return myEntries.size();
+    }
+
+    /**
+     * @return the number of grid transforms the rules keep, including the identity
+     */
+    public int getSymmetries(){
+        return myTransforms.length;
+    }
+
+    /**
+     * @return true iff the rules allow relabelling the digits
+     */
+    public boolean isRelabeling(){
+        return myRelabeling;
+    }
+
+    /**
+     * Find the least image of the givens under every kept transform, relabelling digits in order
+     * of first appearance when allowed
+     */
+    private Canonical canonicalize(Sudoku s){
+        char[] best = null;
+        char[] image = new char[myCells];
+        int[] bestTransform = null;
+        int[] labels = new int[mySize+1];
+        int[] bestLabels = null;
+        for (int[] transform : myTransforms){
+            Arrays.fill(labels, 0);
+            int next = 1;
+            // Negative while the image is already known to be smaller than the best, positive
+            // once it is known to be larger
+            int order = best == null ? -1 : 0;
+            for (int i=0; i<myCells && order<=0; i++){
+                int value = s.getCell(transform[i]);
+                if (value != 0 && myRelabeling){
+                    if (labels[value] == 0) labels[value] = next++;
+                    value = labels[value];
+                }
+                image[i] = (char) ('0'+value);
+                if (order == 0) order = Character.compare(image[i], best[i]);
+            }
+            if (order < 0){
+                best = image.clone();
+                bestTransform = transform;
+                bestLabels = labels.clone();
+            }
+        }
+        // Digits missing from the givens take the labels left over, in increasing order
+        int[] digits = new int[mySize+1];
+        if (myRelabeling){
+            int next = 1;
+            for (int value=1; value<=mySize; value++) next = Math.max(next, bestLabels[value]+1);
+            for (int value=1; value<=mySize; value++){
+                if (bestLabels[value] == 0) bestLabels[value] = next++;
+            }
+        }
+        else{
+            for (int value=1; value<=mySize; value++) bestLabels[value] = value;
+        }
+        for (int value=1; value<=mySize; value++) digits[bestLabels[value]] = value;
+        return new Canonical(new String(best), bestTransform, bestLabels, digits);
+    }
+
+    /**
+     * @return every transform of the candidate symmetry group that the rules keep, each as the
+     * original cell read into each position, the identity first
+     */
+    private static int[][] symmetries(ConstraintGraph graph){
+        int size = graph.getSize();
+        int box = graph.getBoxSize();
+        int cells = graph.getCellCount();
+        boolean[][] peers = new boolean[cells][cells];
+        boolean[][] neighbours = new boolean[cells][cells];
+        for (int idx=0; idx<cells; idx++){
+            for (int peer : graph.getPeers(idx)) peers[idx][peer] = true;
+            for (int neighbour : graph.getNeighbours(idx)) neighbours[idx][neighbour] = true;
+        }
+        // Band and stack orders; beyond 9x9 there are too many to try on every lookup
+        List<int[]> bandOrders = new ArrayList<>();
+        if (box <= 3) permutations(new int[box], 0, new boolean[box], bandOrders);
+        else bandOrders.add(identity(box));
+
+        List<int[]> transforms = new ArrayList<>();
+        Set<List<Integer>> seen = new HashSet<>();
+        for (int dihedral=0; dihedral<8; dihedral++){
+            for (int[] bands : bandOrders){
+                for (int[] stacks : bandOrders){
+                    int[] transform = new int[cells];
+                    for (int row=0; row<size; row++){
+                        for (int col=0; col<size; col++){
+                            // Permute bands and stacks, then rotate and reflect
+                            int r = bands[row/box]*box + row%box;
+                            int c = stacks[col/box]*box + col%box;
+                            if ((dihedral & 4) != 0){
+                                int t = r;
+                                r = c;
+                                c = t;
+                            }
+                            if ((dihedral & 2) != 0) r = size-1-r;
+                            if ((dihedral & 1) != 0) c = size-1-c;
+                            transform[row*size+col] = r*size+c;
+                        }
+                    }
+                    List<Integer> key = new ArrayList<>();
+                    for (int cell : transform) key.add(cell);
+                    if (seen.add(key) && keeps(graph, transform, peers, neighbours)) transforms.add(transform);
+                }
+            }
+        }
+        return transforms.toArray(new int[0][]);
+    }
+
+    /**
+     * Collect every ordering of 0 to n-1, the identity first
+     */
+    private static void permutations(int[] order, int position, boolean[] used, List<int[]> orders){
+        if (position == order.length){
+            orders.add(order.clone());
+            return;
+        }
+        for (int k=0; k<order.length; k++){
+            if (used[k]) continue;
+            used[k] = true;
+            order[position] = k;
+            permutations(order, position+1, used, orders);
+            used[k] = false;
+        }
+    }
+
+    private static int[] identity(int n){
+        int[] order = new int[n];
+        for (int k=0; k<n; k++) order[k] = k;
+        return order;
+    }
+
+    /**
+     * @return true iff the transform maps the structure of the rules onto itself
+     */
+    private static boolean keeps(ConstraintGraph graph, int[] transform, boolean[][] peers, boolean[][] neighbours){
+        boolean identity = true;
+        for (int i=0; i<transform.length; i++) identity &= transform[i] == i;
+        if (identity) return true;
+        // Rules on fixed cells would have to be moved along with the givens
+        if (graph.getAllConstraints().length > 0) return false;
+        for (int a=0; a<transform.length; a++){
+            for (int b=0; b<transform.length; b++){
+                if (peers[a][b] != peers[transform[a]][transform[b]]) return false;
+                if (neighbours[a][b] != neighbours[transform[a]][transform[b]]) return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * A puzzle in canonical form, with the way back to the original
+     */
+    private static final class Canonical {
+        private final String myKey;
+        private final int[] myTransform;
+        private final int[] myLabels;
+        private final int[] myDigits;
+
+        /**
+         * @param key the canonical givens
+         * @param transform the original cell read into each canonical position
+         * @param labels the canonical label of each original digit
+         * @param digits the original digit of each canonical label
+         */
+        Canonical(String key, int[] transform, int[] labels, int[] digits){
+            myKey = key;
+            myTransform = transform;
+            myLabels = labels;
+            myDigits = digits;
+        }
+    }
+}
@@ -0,0 +1,138 @@
+import java.util.*;
+
+/**
+ * Backtracking search as a state machine over an explicit stack of frames, one per branching
+ * cell, so it can stop at a solution and resume from there on demand. It works on the Sudoku it
+ * is given: each solution handed out is that Sudoku, filled in, and stays valid until the next
+ * call to hasNext(). Once the search is exhausted the Sudoku is back where it started.
+ */
+public final class SolutionIterator implements Iterator<Sudoku> {
+    private final Sudoku mySudoku;
+    private final SearchContext myContext;
+    private final SearchStrategy myStrategy;
+    private final SolverStats myStats;
+    private final Deductions myDeductions;
+    private final int myFrom;
+
+    // One frame per branching cell: the cell, candidates not tried yet, trail position before it
+    private final int[] myCells;
+    private final int[] myRemaining;
+    private final int[] myMarks;
+    private int myDepth = 0;
+
+    private boolean myStarted = false;
+    private boolean myFinished = false;
+    /** A solution has been found and not handed out yet */
+    private boolean myReady = false;
+
+    /**
+     * @param s the Sudoku, already pruned
+     * @param from every cell before this one is filled, a hint for row-major order
+     * @param context the strategy, deductions, stats and limits of the search
+     */
+    public SolutionIterator(Sudoku s, int from, SearchContext context){
+        mySudoku = s;
+        myContext = context;
+        myStrategy = context.getStrategy();
+        myStats = context.getStats();
+        myDeductions = context.getDeductions();
+        myFrom = from;
+        int cells = s.getCellCount();
+        myCells = new int[cells];
+        myRemaining = new int[cells];
+        myMarks = new int[cells];
+    }
+
+    /**
+     * @return true iff there is another solution, searching for it if need be
+     */
+    public boolean hasNext(){
+        if (!myReady && !myFinished) myReady = advance();
+        return myReady;
+    }
+
+    /**
+     * @return the next solution, the iterator's own Sudoku
+     */
+    public Sudoku next(){
+        if (!hasNext()) throw new NoSuchElementException();
+        myReady = false;
+        return mySudoku;
+    }
+
+    /**
+     * Run the search up to the next solution
+     * @return true iff one was found, false once the search is exhausted or a limit ran out
+     */
+    private boolean advance(){
+        Sudoku s = mySudoku;
+        if (!myStarted){
+            myStarted = true;
+            if (!myContext.visit()) return finish();
+            if (myStats != null) myStats.visit();
+            if (myDeductions != null && !myDeductions.apply(s, myStats)) return finish();
+            int idx = myStrategy.selectCell(s, myFrom);
+            // Already complete, the one solution has no frames to resume
+            if (idx == -1){
+                myFinished = true;
+                return true;
+            }
+            push(idx);
+        }
+        else{
+            // Resume after a solution: the last candidate tried led to it, move past it
+            s.undo(myMarks[myDepth-1]);
+            if (myStats != null) myStats.backtrack();
+        }
+
+        while (true){
+            int top = myDepth-1;
+            if (myRemaining[top] == 0){
+                // Every candidate of this cell failed, return to the frame below
+                myDepth--;
+                if (myStats != null) myStats.leave();
+                if (myDepth == 0) return finish();
+                s.undo(myMarks[myDepth-1]);
+                if (myStats != null) myStats.backtrack();
+                continue;
+            }
+            int idx = myCells[top];
+            int value = myStrategy.selectValue(s, idx, myRemaining[top]);
+            myRemaining[top] &= ~Sudoku.bit(value);
+            // One node per assignment tried, so every backtrack undoes a node
+            if (!myContext.visit()) return finish();
+            if (myStats != null) myStats.visit();
+            s.assign(idx, value);
+            if (SudokuSolver.propagate(s, myStats) && (myDeductions == null || myDeductions.apply(s, myStats))){
+                int next = myStrategy.selectCell(s, idx+1);
+                if (next == -1) return true;
+                push(next);
+                continue;
+            }
+            s.undo(myMarks[top]);
+            if (myStats != null) myStats.backtrack();
+        }
+    }
+
+    private void push(int idx){
+        if (myStats != null) myStats.enter();
+        myCells[myDepth] = idx;
+        myRemaining[myDepth] = mySudoku.getMask(idx);
+        myMarks[myDepth] = mySudoku.mark();
+        myDepth++;
+    }
+
+    /**
+     * End the search, returning the Sudoku to where it started
+     * @return false
+     */
+    private boolean finish(){
+        if (myDepth > 0) mySudoku.undo(myMarks[0]);
+        if (myStats != null){
+            for (; myDepth>0; myDepth--) myStats.leave();
+        }
+        myDepth = 0;
+        myFinished = true;
+        return false;
+    }
+}
@@ -0,0 +1,133 @@
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Limits and heuristics of a bounded solve: a wall-clock timeout, a search node budget, a
+ * cancellation token, deductions to run before each branch and whether to record SolverStats.
+ * Options are immutable: every with method returns a copy with one setting changed.
+ *
+ * A solve also stops when its thread is interrupted, leaving the interrupt flag set.
+ */
+public final class SolveOptions {
+    /** No limits, the solver picks the search, no stats */
+    public static final SolveOptions DEFAULT = new SolveOptions(null, -1, Long.MAX_VALUE, null, null, false);
+
+    private final SearchStrategy myStrategy;
+    private final long myTimeoutNanos;
+    private final long myNodeLimit;
+    private final CancellationToken myToken;
+    private final Deductions myDeductions;
+    private final boolean myRecordingStats;
+
+    private SolveOptions(SearchStrategy strategy, long timeoutNanos, long nodeLimit, CancellationToken token, Deductions deductions,
+                         boolean recordingStats){
+        myStrategy = strategy;
+        myTimeoutNanos = timeoutNanos;
+        myNodeLimit = nodeLimit;
+        myToken = token;
+        myDeductions = deductions;
+        myRecordingStats = recordingStats;
+    }
+
+    /**
+     * @param strategy how cells and candidates are picked when branching, null to let the solver
+     * pick exact cover when the rules allow it and SearchStrategy.DEFAULT otherwise
+     * @return these options with the given strategy
+     */
+    public SolveOptions withStrategy(SearchStrategy strategy){
+        return new SolveOptions(strategy, myTimeoutNanos, myNodeLimit, myToken, myDeductions, myRecordingStats);
+    }
+
+    /**
+     * @param timeout how long a solve may run, counted from its start
+     * @param unit the unit of the timeout
+     * @return these options with the given timeout
+     */
+    public SolveOptions withTimeout(long timeout, TimeUnit unit){
+        if (timeout < 0) throw new IllegalArgumentException("Timeout must not be negative: " + timeout);
+        return new SolveOptions(myStrategy, unit.toNanos(timeout), myNodeLimit, myToken, myDeductions, myRecordingStats);
+    }
+
+    /**
+     * @param nodeLimit the most search nodes a solve may visit
+     * @return these options with the given node budget
+     */
+    public SolveOptions withNodeLimit(long nodeLimit){
+        if (nodeLimit < 0) throw new IllegalArgumentException("Node limit must not be negative: " + nodeLimit);
+        return new SolveOptions(myStrategy, myTimeoutNanos, nodeLimit, myToken, myDeductions, myRecordingStats);
+    }
+
+    /**
+     * @param token a token that stops the solve once cancelled, null for none
+     * @return these options with the given token
+     */
+    public SolveOptions withToken(CancellationToken token){
+        return new SolveOptions(myStrategy, myTimeoutNanos, myNodeLimit, token, myDeductions, myRecordingStats);
+    }
+
+    /**
+     * @param deductions techniques run to a fixpoint before each branch, null for none; exact
+     * cover is not used when there are any
+     * @return these options with the given deductions
+     */
+    public SolveOptions withDeductions(Deductions deductions){
+        return new SolveOptions(myStrategy, myTimeoutNanos, myNodeLimit, myToken, deductions, myRecordingStats);
+    }
+
+    /**
+     * @param recordingStats true to return SolverStats with the result
+     * @return these options with stats recorded or not
+     */
+    public SolveOptions withStats(boolean recordingStats){
+        return new SolveOptions(myStrategy, myTimeoutNanos, myNodeLimit, myToken, myDeductions, recordingStats);
+    }
+
+    /**
+     * @return how cells and candidates are picked when branching, null if the solver picks
+     */
+    public SearchStrategy getStrategy(){
+        return myStrategy;
+    }
+
+    /**
+     * @return how long a solve may run in nanoseconds, -1 for no timeout
+     */
+    public long getTimeoutNanos(){
+        return myTimeoutNanos;
+    }
+
+    /**
+     * @return the most search nodes a solve may visit
+     */
+    public long getNodeLimit(){
+        return myNodeLimit;
+    }
+
+    /**
+     * @return the token that stops the solve once cancelled, null if there is none
+     */
+    public CancellationToken getToken(){
+        return myToken;
+    }
+
+    /**
+     * @return the techniques run before each branch, null if there are none
+     */
+    public Deductions getDeductions(){
+        return myDeductions;
+    }
+
+    /**
+     * @return true iff SolverStats are returned with the result
+     */
+    public boolean isRecordingStats(){
+        return myRecordingStats;
+    }
+
+    /**
+     * @return String representation of the options
+     */
+    public String toString(){
+        return "SolveOptions(strategy=" + myStrategy + ", timeoutNanos=" + myTimeoutNanos + ", nodeLimit=" + myNodeLimit
+                + ", token=" + (myToken != null) + ", deductions=" + myDeductions + ", stats=" + myRecordingStats + ")";
+    }
+}
@@ -0,0 +1,76 @@
+/**
+ * Outcome of a bounded solve: how it ended, the solution if one was found, and what the search
+ * did up to that point
+ */
+public final class SolveResult {
+    /**
+     * How a solve ended
+     */
+    public enum Status {
+        /** A solution was found */
+        SOLVED,
+        /** The whole search space was explored without a solution */
+        UNSOLVABLE,
+        /** The timeout or node limit ran out first */
+        BUDGET_EXHAUSTED,
+        /** The token was cancelled or the thread interrupted first */
+        CANCELLED
+    }
+
+    private final Status myStatus;
+    private final Sudoku mySolution;
+    private final long myNodes;
+    private final long myElapsedNanos;
+    private final SolverStats myStats;
+
+    SolveResult(Status status, Sudoku solution, long nodes, long elapsedNanos, SolverStats stats){
+        myStatus = status;
+        mySolution = solution;
+        myNodes = nodes;
+        myElapsedNanos = elapsedNanos;
+        myStats = stats;
+    }
+
+    /**
+     * @return how the solve ended
+     */
+    public Status getStatus(){
+        return myStatus;
+    }
+
+    /**
+     * @return the completed Sudoku, null unless the status is SOLVED
+     */
+    public Sudoku getSolution(){
+        return mySolution;
+    }
+
+    /**
+     * @return the number of search nodes visited
+     */
+    public long getNodes(){
+        return myNodes;
+    }
+
+    /**
+     * @return the wall-clock time of the solve in nanoseconds
+     */
+    public long getElapsedNanos(){
+        return myElapsedNanos;
+    }
+
+    /**
+     * @return the counters of the search up to where it ended, null unless the options asked
+     * for them
+     */
+    public SolverStats getStats(){
+        return myStats;
+    }
+
+    /**
+     * @return String representation of the result
+     */
+    public String toString(){
+        return String.format("%s after %d nodes in %.3f ms", myStatus, myNodes, myElapsedNanos/1e6);
+    }
+}
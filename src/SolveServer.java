@@ -0,0 +1,353 @@
+import com.sun.net.httpserver.*;
+import java.io.*;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.*;
+import java.util.concurrent.*;
+
+/**
+ * A local HTTP front end to the solver, built on the JDK's own server.
+ *
+ * POST /solve takes a text body of puzzle lines of one size, one character per cell as
+ * cellParser reads them, and rule lines in the RuleParser form; the rules, normal if none are
+ * given, apply to every puzzle. The query may set timeout (milliseconds, default 10000) and
+ * nodes (a node limit). The answer has one line per puzzle, in order: the SolveResult status,
+ * then the solution, or if it was not solved the grid as far as propagation filled it.
+ *
+ * GET /stats reports request counts and latency percentiles over the most recent requests.
+ *
+ * Connections are handled on virtual threads when the JDK has them, and on a cached pool
+ * otherwise; solving always happens on a bounded pool of CPU workers. Puzzles whose rules reduce
+ * to exact cover solve in microseconds, so they are grouped into micro-batches, one worker task
+ * per batch rather than per puzzle; other puzzles get a task each.
+ */
+public final class SolveServer {
+    /** Largest request body accepted, in bytes */
+    private static final int MAX_BODY = 1 << 20;
+    /** Most easy puzzles solved by one worker task */
+    private static final int BATCH = 64;
+    /** Puzzles waiting for a worker before requests are turned away */
+    private static final int QUEUE = 4096;
+    /** Compiled rule sets kept for reuse */
+    private static final int GRAPHS = 64;
+    private static final long DEFAULT_TIMEOUT_MILLIS = 10000;
+
+    private final HttpServer myServer;
+    private final ExecutorService myConnections;
+    private final ThreadPoolExecutor myWorkers;
+    private final BlockingQueue<Job> myEasy = new ArrayBlockingQueue<>(QUEUE);
+    private final Thread myBatcher;
+    private final Map<List<Object>, ConstraintGraph> myGraphs;
+    private final Latencies myLatencies = new Latencies(1 << 14);
+
+    /**
+     * @param address the address to listen on, port 0 for any free port
+     * @param threads number of CPU workers
+     */
+    public SolveServer(InetSocketAddress address, int threads) throws IOException {
+        myServer = HttpServer.create(address, 0);
+        myConnections = connectionExecutor();
+        myWorkers = new ThreadPoolExecutor(threads, threads, 0, TimeUnit.MILLISECONDS, new ArrayBlockingQueue<>(QUEUE));
+        myWorkers.prestartAllCoreThreads();
+        myGraphs = Collections.synchronizedMap(new LinkedHashMap<List<Object>, ConstraintGraph>(16, 0.75f, true){
+            protected boolean removeEldestEntry(Map.Entry<List<Object>, ConstraintGraph> eldest){
+                return size() > GRAPHS;
+            }
+        });
+        myServer.setExecutor(myConnections);
+        myServer.createContext("/solve", this::handleSolve);
+        myServer.createContext("/stats", this::handleStats);
+        myBatcher = new Thread(this::batch, "solve-server-batcher");
+        myBatcher.setDaemon(true);
+    }
+
+    /**
+     * Usage: SolveServer [port] [threads], by default port 8080 and one worker per core
+     */
+    public static void main(String[] args) throws IOException {
+        int port = args.length > 0 ? Integer.parseInt(args[0]) : 8080;
+        int threads = args.length > 1 ? Integer.parseInt(args[1]) : Runtime.getRuntime().availableProcessors();
+        SolveServer server = new SolveServer(new InetSocketAddress("localhost", port), threads);
+        server.start();
+        System.err.println("Solving on http://localhost:" + server.getPort() + "/solve");
+    }
+
+    /**
+     * Start accepting requests
+     */
+    public void start(){
+        myBatcher.start();
+        myServer.start();
+    }
+
+    /**
+     * Stop accepting requests and shut the workers down
+     */
+    public void stop(){
+        myServer.stop(0);
+        myBatcher.interrupt();
+        myWorkers.shutdownNow();
+        myConnections.shutdownNow();
+    }
+
+    /**
+     * @return the port the server listens on
+     */
+    public int getPort(){
+        return myServer.getAddress().getPort();
+    }
+
+    /**
+     * @return a virtual thread per connection if the JDK has them, a cached thread pool otherwise
+     */
+    private static ExecutorService connectionExecutor(){
+        try {
+            return (ExecutorService) Executors.class.getMethod("newVirtualThreadPerTaskExecutor").invoke(null);
+        }
+        catch (ReflectiveOperationException e){
+            return Executors.newCachedThreadPool();
+        }
+    }
+
+    private void handleSolve(HttpExchange exchange) throws IOException {
+        long start = System.nanoTime();
+        try {
+            if (!exchange.getRequestMethod().equals("POST")){
+                respond(exchange, 405, "Use POST\n");
+                return;
+            }
+            byte[] body = exchange.getRequestBody().readNBytes(MAX_BODY+1);
+            if (body.length > MAX_BODY){
+                respond(exchange, 413, "Request body is over " + MAX_BODY + " bytes\n");
+                return;
+            }
+
+            // Puzzle lines and rule lines
+            List<int[]> puzzles = new ArrayList<>();
+            List<String> ruleLines = new ArrayList<>();
+            SolveOptions options;
+            ConstraintGraph graph;
+            try {
+                for (String line : new String(body, StandardCharsets.UTF_8).split("\n")){
+                    line = line.trim();
+                    if (SudokuSolver.isGridLine(line)) puzzles.add(SudokuSolver.cellParser(line));
+                    else ruleLines.add(line);
+                }
+                Map<String, List<List<Integer>>> rules = RuleParser.parse(ruleLines);
+                if (rules.isEmpty()) rules.put("normal", null);
+                int cells = puzzles.isEmpty() ? Sudoku.CELLS : puzzles.get(0).length;
+                for (int[] puzzle : puzzles){
+                    if (puzzle.length != cells) throw new IllegalArgumentException("Puzzles of one request must have the same size");
+                }
+                graph = graph(rules, Sudoku.sizeOf(cells));
+                options = options(exchange.getRequestURI().getRawQuery());
+            }
+            catch (IllegalArgumentException e){
+                respond(exchange, 400, e.getMessage() + "\n");
+                return;
+            }
+
+            // Queue every puzzle, then wait for them in order
+            List<Job> jobs = new ArrayList<>(puzzles.size());
+            try {
+                for (int[] cells : puzzles){
+                    Job job = new Job(new Sudoku(cells, graph), options);
+                    jobs.add(job);
+                    submit(job);
+                }
+            }
+            catch (RejectedExecutionException e){
+                // Nobody will read the puzzles already queued, so withdraw them rather than solve them
+                for (Job job : jobs) withdraw(job);
+                respond(exchange, 503, "Too many puzzles waiting, try again later\n");
+                return;
+            }
+            StringBuilder out = new StringBuilder(jobs.size()*(graph.getCellCount()+20));
+            for (Job job : jobs){
+                SolveResult result = job.myResult.get();
+                out.append(result.getStatus()).append(' ').append(SudokuSolver.cellFormat(job.mySudoku)).append('\n');
+            }
+            respond(exchange, 200, out.toString());
+        }
+        catch (InterruptedException e){
+            Thread.currentThread().interrupt();
+            respond(exchange, 503, "Server is stopping\n");
+        }
+        catch (ExecutionException e){
+            respond(exchange, 500, "Solver failed: " + e.getCause() + "\n");
+        }
+        finally {
+            exchange.close();
+            myLatencies.record(System.nanoTime()-start);
+        }
+    }
+
+    private void handleStats(HttpExchange exchange) throws IOException {
+        try {
+            long[] latencies = myLatencies.snapshot();
+            Arrays.sort(latencies);
+            StringBuilder out = new StringBuilder();
+            out.append("requests ").append(myLatencies.count()).append('\n');
+            out.append("queued ").append(myWorkers.getQueue().size() + myEasy.size()).append('\n');
+            for (double p : new double[]{0.5, 0.9, 0.99, 0.999, 1}){
+                out.append(String.format("p%s %.1f us%n", p == 1 ? "100" : Double.toString(p*100).replaceAll("\\.0$", ""), percentile(latencies, p)/1e3));
+            }
+            respond(exchange, 200, out.toString());
+        }
+        finally {
+            exchange.close();
+        }
+    }
+
+    private static void respond(HttpExchange exchange, int code, String body) throws IOException {
+        byte[] bytes = body.getBytes(StandardCharsets.UTF_8);
+        exchange.getResponseHeaders().set("Content-Type", "text/plain; charset=utf-8");
+        exchange.sendResponseHeaders(code, bytes.length);
+        exchange.getResponseBody().write(bytes);
+    }
+
+    /**
+     * @return the compiled rules, reused across requests with the same rules and size
+     */
+    private ConstraintGraph graph(Map<String, List<List<Integer>>> rules, int size){
+        List<Object> key = Arrays.asList(rules, size);
+        ConstraintGraph graph = myGraphs.get(key);
+        if (graph == null){
+            graph = ConstraintGraph.compile(rules, size);
+            myGraphs.put(key, graph);
+        }
+        return graph;
+    }
+
+    /**
+     * @param query the raw query of a request, null if it has none
+     * @return the solve options it asks for
+     */
+    private static SolveOptions options(String query){
+        long timeout = DEFAULT_TIMEOUT_MILLIS;
+        long nodes = Long.MAX_VALUE;
+        if (query != null){
+            for (String parameter : query.split("&")){
+                String[] pair = parameter.split("=", 2);
+                try {
+                    if (pair[0].equals("timeout")) timeout = Long.parseLong(pair[1]);
+                    else if (pair[0].equals("nodes")) nodes = Long.parseLong(pair[1]);
+                }
+                catch (NumberFormatException | ArrayIndexOutOfBoundsException e){
+                    throw new IllegalArgumentException("Malformed query parameter: " + parameter);
+                }
+            }
+        }
+        return SolveOptions.DEFAULT.withTimeout(timeout, TimeUnit.MILLISECONDS).withNodeLimit(nodes);
+    }
+
+    /**
+     * Hand a puzzle to the workers, through a micro-batch if it is easy
+     */
+    private void submit(Job job){
+        if (DancingLinks.supports(job.mySudoku.getConstraintGraph())){
+            if (!myEasy.offer(job)) throw new RejectedExecutionException();
+        }
+        else{
+            myWorkers.execute(job.myTask);
+        }
+    }
+
+    /**
+     * Take a puzzle back from the workers, or stop it at its next node if one already has it
+     */
+    private void withdraw(Job job){
+        job.myToken.cancel();
+        if (!myEasy.remove(job)) myWorkers.remove(job.myTask);
+    }
+
+    /**
+     * Group waiting easy puzzles into one worker task each time a worker may take one, blocking
+     * while the worker queue is full
+     */
+    private void batch(){
+        List<Job> batch = new ArrayList<>(BATCH);
+        try {
+            while (true){
+                batch.add(myEasy.take());
+                myEasy.drainTo(batch, BATCH-1);
+                Job[] jobs = batch.toArray(new Job[0]);
+                batch.clear();
+                // Wait for room rather than fail puzzles of requests that were already accepted;
+                // every worker is started up front, so a queued task is always taken
+                myWorkers.getQueue().put(() -> {
+                    for (Job job : jobs) job.run();
+                });
+            }
+        }
+        catch (InterruptedException e){
+            // Server stopped
+        }
+    }
+
+    /**
+     * One puzzle of a request
+     */
+    private static final class Job {
+        private final Sudoku mySudoku;
+        private final CancellationToken myToken = new CancellationToken();
+        private final SolveOptions myOptions;
+        private final Runnable myTask = this::run;
+        private final CompletableFuture<SolveResult> myResult = new CompletableFuture<>();
+
+        Job(Sudoku s, SolveOptions options){
+            mySudoku = s;
+            myOptions = options.withToken(myToken);
+        }
+
+        void run(){
+            // Withdrawn while it waited in a batch
+            if (myToken.isCancelled()){
+                myResult.cancel(false);
+                return;
+            }
+            try {
+                myResult.complete(SudokuSolver.solve(mySudoku, myOptions));
+            }
+            catch (RuntimeException e){
+                myResult.completeExceptionally(e);
+            }
+        }
+    }
+
+    /**
+     * Nearest-rank percentile
+     * @param sorted sorted samples
+     * @param p the fraction of samples at or below the result
+     * @return the percentile, 0 if there are no samples
+     */
+    private static long percentile(long[] sorted, double p){
+        if (sorted.length == 0) return 0;
+        int rank = (int) Math.ceil(p*sorted.length);
+        return sorted[Math.max(rank, 1)-1];
+    }
+
+    /**
+     * The most recent request latencies, in a ring buffer
+     */
+    private static final class Latencies {
+        private final long[] mySamples;
+        private long myCount = 0;
+
+        Latencies(int capacity){
+            mySamples = new long[capacity];
+        }
+
+        synchronized void record(long nanos){
+            mySamples[(int) (myCount++ % mySamples.length)] = nanos;
+        }
+
+        synchronized long count(){
+            return myCount;
+        }
+
+        synchronized long[] snapshot(){
+            return Arrays.copyOf(mySamples, (int) Math.min(myCount, mySamples.length));
+        }
+    }
+}
@@ -0,0 +1,322 @@
+import java.util.*;
+
+/**
+ * An editing session over one puzzle, for setters who change a given or a rule at a time and
+ * re-solve after every edit. The propagated state is kept between edits: a new given is placed
+ * and propagated on top of it, taking back the last given placed undoes it on the trail, and a new
+ * rule starts from the candidates already ruled out. Other edits relax the puzzle and propagate
+ * the givens again. The solution found before an edit is the first branch tried after it, and
+ * while edits only add givens or rules the uniqueness of the puzzle is known without a search
+ * as long as that solution still holds.
+ */
+public final class SolveSession {
+    /**
+     * How many solutions the puzzle has
+     */
+    public enum State {
+        /** No solution */
+        UNSOLVABLE,
+        /** Exactly one solution */
+        UNIQUE,
+        /** Two solutions or more */
+        MULTIPLE
+    }
+
+    private final int[] myGivens;
+    private final int mySize;
+    private final SearchStrategy myStrategy;
+    private Map<String, List<List<Integer>>> myRules;
+    private ConstraintGraph myGraph;
+    private Sudoku mySudoku;
+
+    // Givens placed since the givens were last propagated from scratch, most recent last: the
+    // cell and the trail position before it
+    private final int[] myPlaced;
+    private final int[] myPlacedMarks;
+    private int myPlacedCount = 0;
+    /**
+     * Number of placed givens once propagation found a contradiction, 0 for the givens
+     * themselves, -1 if there is none
+     */
+    private int myBroken = -1;
+
+    /** An edit was made since the last solve */
+    private boolean myDirty = true;
+    /** Every edit since the last solve added a given or a rule, so no solution was added */
+    private boolean myTightened = false;
+    private State myState;
+    private int[] mySolution;
+
+    /**
+     * @param givens the cells of the puzzle, 0 for an empty cell, copied
+     * @param rules the rules of the puzzle, copied
+     */
+    public SolveSession(int[] givens, Map<String, List<List<Integer>>> rules){
+        this(givens, rules, SearchStrategy.DEFAULT);
+    }
+
+    /**
+     * @param givens the cells of the puzzle, 0 for an empty cell, copied
+     * @param rules the rules of the puzzle, copied
+     * @param strategy how cells and candidates are picked when branching
+     */
+    public SolveSession(int[] givens, Map<String, List<List<Integer>>> rules, SearchStrategy strategy){
+        myGivens = givens.clone();
+        mySize = Sudoku.sizeOf(givens.length);
+        myStrategy = strategy;
+        myRules = copy(rules);
+        myGraph = ConstraintGraph.compile(myRules, mySize);
+        myPlaced = new int[givens.length];
+        myPlacedMarks = new int[givens.length];
+        for (int value : myGivens) checkDigit(value);
+        rebuild(null);
+    }
+
+    /**
+     * @param idx the cell index, row*size+col
+     * @return the given digit of the cell, 0 if it has none
+     */
+    public int getGiven(int idx){
+        return myGivens[idx];
+    }
+
+    /**
+     * Place, change or clear a given
+     * @param idx the cell index, row*size+col
+     * @param value the new given digit of the cell, 0 to clear it
+     */
+    public void setGiven(int idx, int value){
+        if (idx < 0 || idx >= myGivens.length) throw new IllegalArgumentException("Cell index must be 0 to " + (myGivens.length-1) + ": " + idx);
+        checkDigit(value);
+        if (myGivens[idx] == value) return;
+        if (myGivens[idx] != 0) release(idx);
+        if (value != 0) place(idx, value);
+        myDirty = true;
+    }
+
+    /**
+     * @return the rules of the puzzle, keyed by rule name
+     */
+    public Map<String, List<List<Integer>>> getRules(){
+        return Collections.unmodifiableMap(myRules);
+    }
+
+    /**
+     * Add a rule, or one entry of a rule such as a thermometer or a kropki dot
+     * @param name the rule name
+     * @param entry the entry to add, null for a rule without entries such as knight
+     * @return true iff the rules changed
+     */
+    public boolean addRule(String name, List<Integer> entry){
+        Map<String, List<List<Integer>>> rules = copy(myRules);
+        if (entry == null){
+            if (rules.containsKey(name)) return false;
+            rules.put(name, null);
+        }
+        else{
+            if (rules.get(name) == null) rules.put(name, new ArrayList<>());
+            rules.get(name).add(new ArrayList<>(entry));
+        }
+        // A dot lifts the negative constraint between its cells, so it is not only a tightening
+        boolean tighter = !name.equals("kropki") || !rules.containsKey("negativekropki");
+        update(rules, tighter);
+        return true;
+    }
+
+    /**
+     * Remove a rule, or one entry of it
+     * @param name the rule name
+     * @param entry the entry to remove, null to remove the whole rule
+     * @return true iff the rules changed
+     */
+    public boolean removeRule(String name, List<Integer> entry){
+        if (!myRules.containsKey(name)) return false;
+        Map<String, List<List<Integer>>> rules = copy(myRules);
+        if (entry == null){
+            rules.remove(name);
+        }
+        else{
+            List<List<Integer>> entries = rules.get(name);
+            if (entries == null || !entries.remove(entry)) return false;
+            if (entries.isEmpty()) rules.remove(name);
+        }
+        update(rules, false);
+        return true;
+    }
+
+    /**
+     * @param idx the cell index, row*size+col
+     * @return the candidate mask of the cell once the givens and rules are propagated
+     */
+    public int getCandidates(int idx){
+        return mySudoku.getMask(idx);
+    }
+
+    /**
+     * Solve the puzzle as it is now, unless it was not edited since
+     * @return how many solutions it has
+     */
+    public State getState(){
+        solve();
+        return myState;
+    }
+
+    /**
+     * Solve the puzzle as it is now, unless it was not edited since
+     * @return a solution, the only one if the state is unique, null if there is none
+     */
+    public Sudoku getSolution(){
+        solve();
+        return mySolution == null ? null : new Sudoku(mySolution.clone(), myGraph);
+    }
+
+    /**
+     * Place a given and propagate it on top of the current state
+     */
+    private void place(int idx, int value){
+        myGivens[idx] = value;
+        myPlaced[myPlacedCount] = idx;
+        myPlacedMarks[myPlacedCount] = mySudoku.mark();
+        myPlacedCount++;
+        if (myBroken != -1) return;
+        if ((mySudoku.getMask(idx) & Sudoku.bit(value)) == 0){
+            myBroken = myPlacedCount;
+            return;
+        }
+        mySudoku.assign(idx, value);
+        if (!SudokuSolver.propagate(mySudoku)) myBroken = myPlacedCount;
+    }
+
+    /**
+     * Clear a given, undoing it if it was the last one placed and propagating every given again
+     * otherwise
+     */
+    private void release(int idx){
+        myGivens[idx] = 0;
+        myTightened = false;
+        if (myPlacedCount > 0 && myPlaced[myPlacedCount-1] == idx){
+            myPlacedCount--;
+            mySudoku.undo(myPlacedMarks[myPlacedCount]);
+            if (myBroken > myPlacedCount) myBroken = -1;
+        }
+        else{
+            rebuild(null);
+        }
+    }
+
+    /**
+     * Switch to new rules, compiled before anything changes so bad rules leave the session as it
+     * was
+     * @param tighter true iff the new rules only add constraints, so the current candidates still
+     * hold
+     */
+    private void update(Map<String, List<List<Integer>>> rules, boolean tighter){
+        ConstraintGraph graph = ConstraintGraph.compile(rules, mySize);
+        Sudoku seed = tighter && myBroken == -1 ? mySudoku : null;
+        myRules = rules;
+        myGraph = graph;
+        rebuild(seed);
+        if (!tighter) myTightened = false;
+        myDirty = true;
+    }
+
+    /**
+     * Propagate the givens from scratch
+     * @param seed a state of looser rules whose candidates are kept, null for none
+     */
+    private void rebuild(Sudoku seed){
+        Sudoku s = new Sudoku(myGivens.clone(), myGraph);
+        if (seed != null){
+            for (int i=0; i<myGivens.length; i++) s.setMask(i, s.getMask(i) & seed.getMask(i));
+        }
+        mySudoku = s;
+        myPlacedCount = 0;
+        myBroken = SudokuSolver.prune(s) ? -1 : 0;
+    }
+
+    /**
+     * Bring the state and solution up to date with the edits
+     */
+    private void solve(){
+        if (!myDirty) return;
+        myDirty = false;
+        boolean tightened = myTightened;
+        myTightened = true;
+        if (myBroken != -1){
+            myState = State.UNSOLVABLE;
+            mySolution = null;
+            return;
+        }
+
+        // Edits that only add givens and rules can only take solutions away: none stays none, and a
+        // unique solution either survives them or was the last one
+        boolean fits = mySolution != null && fits(mySolution);
+        if (tightened && myState == State.UNSOLVABLE) return;
+        if (tightened && myState == State.UNIQUE){
+            if (!fits){
+                myState = State.UNSOLVABLE;
+                mySolution = null;
+            }
+            return;
+        }
+
+        Sudoku work = new Sudoku(mySudoku);
+        if (DancingLinks.supports(myGraph)){
+            // Exact cover settles uniqueness faster than backtracking, and keeps the first
+            // solution it finds in case the previous one no longer holds
+            int[] first = fits ? mySolution : new int[myGivens.length];
+            int count = DancingLinks.count(work, 2, fits ? null : first);
+            myState = count == 0 ? State.UNSOLVABLE : count == 1 ? State.UNIQUE : State.MULTIPLE;
+            mySolution = count == 0 ? null : first;
+            return;
+        }
+
+        // The previous solution is tried first, so if it still holds it is found again without a
+        // single backtrack and the search goes straight on to look for a second one
+        SearchStrategy strategy = mySolution == null ? myStrategy : myStrategy.withHint(mySolution);
+        SolutionIterator solutions = new SolutionIterator(work, 0, new SearchContext(strategy));
+        if (!solutions.hasNext()){
+            myState = State.UNSOLVABLE;
+            mySolution = null;
+            return;
+        }
+        mySolution = cellsOf(solutions.next());
+        myState = solutions.hasNext() ? State.MULTIPLE : State.UNIQUE;
+    }
+
+    private static int[] cellsOf(Sudoku s){
+        int[] cells = new int[s.getCellCount()];
+        for (int i=0; i<cells.length; i++) cells[i] = s.getCell(i);
+        return cells;
+    }
+
+    /**
+     * @return true iff a grid is still a solution of the givens and rules
+     */
+    private boolean fits(int[] solution){
+        for (int i=0; i<solution.length; i++){
+            if ((mySudoku.getMask(i) & Sudoku.bit(solution[i])) == 0) return false;
+        }
+        Sudoku filled = new Sudoku(solution.clone(), myGraph);
+        for (int i=0; i<solution.length; i++){
+            if (!myGraph.isValid(filled, i)) return false;
+        }
+        return true;
+    }
+
+    private void checkDigit(int value){
+        if (value < 0 || value > mySize) throw new IllegalArgumentException("Digit must be 0 to " + mySize + ": " + value);
+    }
+
+    /**
+     * @return a copy of the rules whose entry lists can be changed without touching the original
+     */
+    private static Map<String, List<List<Integer>>> copy(Map<String, List<List<Integer>>> rules){
+        Map<String, List<List<Integer>>> copy = new LinkedHashMap<>();
+        if (rules == null) return copy;
+        for (Map.Entry<String, List<List<Integer>>> rule : rules.entrySet()){
+            copy.put(rule.getKey(), rule.getValue() == null ? null : new ArrayList<>(rule.getValue()));
+        }
+        return copy;
+    }
+}
@@ -0,0 +1,333 @@
+import java.util.*;
+import jdk.jfr.*;
+
+/**
+ * Counters of one solve: search nodes, backtracks and depth, and for each rule the time spent
+ * pruning and propagating and the number of times it emptied a branch. Rules are named by
+ * Constraint.getRule(), plus "peers" for the all-different rules (normal, diagonal, disjoint,
+ * knight, king) and "nonconsecutive". When the search runs Deductions, each technique's runs,
+ * the runs that changed the grid, and the cells it changed are counted too.
+ *
+ * Solving without a SolverStats records nothing. A solve with one also commits a SolveEvent, one
+ * RuleEvent per rule and one TechniqueEvent per technique to Java Flight Recorder when it is
+ * recording. The counters are not thread-safe, so a SolverStats belongs to a single sequential
+ * solve.
+ */
+public final class SolverStats {
+    private final Map<String, RuleStats> myRules = new LinkedHashMap<>();
+    private final Map<String, TechniqueStats> myTechniques = new LinkedHashMap<>();
+    private long myNodes = 0;
+    private long myBacktracks = 0;
+    private int myDepth = 0;
+    private int myMaxDepth = 0;
+    private long myElapsedNanos = 0;
+    private boolean mySolved = false;
+
+    /**
+     * @return the number of search nodes visited: the root and every assignment tried
+     */
+    public long getNodes(){
+        return myNodes;
+    }
+
+    /**
+     * @return the number of guesses that were undone
+     */
+    public long getBacktracks(){
+        return myBacktracks;
+    }
+
+    /**
+     * @return the most guesses in effect at once
+     */
+    public int getMaxDepth(){
+        return myMaxDepth;
+    }
+
+    /**
+     * @return the wall-clock time of the solve in nanoseconds
+     */
+    public long getElapsedNanos(){
+        return myElapsedNanos;
+    }
+
+    /**
+     * @return the counters of each rule that ran, by rule name, in the order they first ran
+     */
+    public Map<String, RuleStats> getRules(){
+        return Collections.unmodifiableMap(myRules);
+    }
+
+    /**
+     * @return the counters of each technique that ran, by name, in the order they first ran
+     */
+    public Map<String, TechniqueStats> getTechniques(){
+        return Collections.unmodifiableMap(myTechniques);
+    }
+
+    /**
+     * Count a search node, the root or one assignment tried, as SearchContext.visit() does
+     */
+    void visit(){
+        myNodes++;
+    }
+
+    /**
+     * Enter a guess at a new cell
+     */
+    void enter(){
+        if (++myDepth > myMaxDepth) myMaxDepth = myDepth;
+    }
+
+    /**
+     * Leave a guess at a cell
+     */
+    void leave(){
+        myDepth--;
+    }
+
+    /**
+     * Count an undone guess
+     */
+    void backtrack(){
+        myBacktracks++;
+    }
+
+    /**
+     * Record one run of a rule
+     * @param rule the rule name
+     * @param start System.nanoTime() when the rule started
+     * @param ok false iff the rule emptied the branch
+     */
+    void record(String rule, long start, boolean ok){
+        long nanos = System.nanoTime()-start;
+        RuleStats stats = myRules.get(rule);
+        if (stats == null){
+            stats = new RuleStats();
+            myRules.put(rule, stats);
+        }
+        stats.myCalls++;
+        stats.myNanos += nanos;
+        if (!ok) stats.myWipeouts++;
+    }
+
+    /**
+     * Record one run of a deduction technique
+     * @param technique the technique name
+     * @param start System.nanoTime() when the technique started
+     * @param ok false iff the technique emptied the branch
+     * @param changes the number of cell and candidate changes it made
+     */
+    void deduce(String technique, long start, boolean ok, int changes){
+        long nanos = System.nanoTime()-start;
+        TechniqueStats stats = myTechniques.get(technique);
+        if (stats == null){
+            stats = new TechniqueStats();
+            myTechniques.put(technique, stats);
+        }
+        stats.myCalls++;
+        stats.myNanos += nanos;
+        if (changes > 0) stats.myFired++;
+        stats.myChanges += changes;
+        if (!ok) stats.myWipeouts++;
+    }
+
+    /**
+     * Finish the solve and commit its JFR events
+     * @param start System.nanoTime() when the solve started
+     * @param solved true iff a solution was found
+     */
+    void finish(long start, boolean solved){
+        myElapsedNanos = System.nanoTime()-start;
+        mySolved = solved;
+        SolveEvent solve = new SolveEvent();
+        if (!solve.isEnabled()) return;
+        solve.solved = solved;
+        solve.nodes = myNodes;
+        solve.backtracks = myBacktracks;
+        solve.maxDepth = myMaxDepth;
+        solve.elapsed = myElapsedNanos;
+        solve.commit();
+        for (Map.Entry<String, RuleStats> rule : myRules.entrySet()){
+            RuleEvent event = new RuleEvent();
+            event.rule = rule.getKey();
+            event.calls = rule.getValue().myCalls;
+            event.time = rule.getValue().myNanos;
+            event.wipeouts = rule.getValue().myWipeouts;
+            event.commit();
+        }
+        for (Map.Entry<String, TechniqueStats> technique : myTechniques.entrySet()){
+            TechniqueEvent event = new TechniqueEvent();
+            event.technique = technique.getKey();
+            event.calls = technique.getValue().myCalls;
+            event.fired = technique.getValue().myFired;
+            event.changes = technique.getValue().myChanges;
+            event.time = technique.getValue().myNanos;
+            event.wipeouts = technique.getValue().myWipeouts;
+            event.commit();
+        }
+    }
+
+    /**
+     * @return String representation of the counters
+     */
+    public String toString(){
+        StringBuilder out = new StringBuilder();
+        out.append(String.format("%s in %.3f ms: %d nodes, %d backtracks, max depth %d%n",
+                mySolved ? "Solved" : "No solution", myElapsedNanos/1e6, myNodes, myBacktracks, myMaxDepth));
+        for (Map.Entry<String, RuleStats> rule : myRules.entrySet()){
+            out.append(String.format("  %-16s %s%n", rule.getKey(), rule.getValue()));
+        }
+        for (Map.Entry<String, TechniqueStats> technique : myTechniques.entrySet()){
+            out.append(String.format("  %-16s %s%n", technique.getKey(), technique.getValue()));
+        }
+        return out.toString();
+    }
+
+    /**
+     * Counters of one rule
+     */
+    public static final class RuleStats {
+        private long myCalls = 0;
+        private long myNanos = 0;
+        private long myWipeouts = 0;
+
+        /**
+         * @return the number of times the rule ran
+         */
+        public long getCalls(){
+            return myCalls;
+        }
+
+        /**
+         * @return the total time spent in the rule in nanoseconds
+         */
+        public long getNanos(){
+            return myNanos;
+        }
+
+        /**
+         * @return the number of times the rule emptied a branch
+         */
+        public long getWipeouts(){
+            return myWipeouts;
+        }
+
+        public String toString(){
+            return String.format("%d calls, %.3f ms, %d wipeouts", myCalls, myNanos/1e6, myWipeouts);
+        }
+    }
+
+    /**
+     * Counters of one deduction technique
+     */
+    public static final class TechniqueStats {
+        private long myCalls = 0;
+        private long myFired = 0;
+        private long myChanges = 0;
+        private long myNanos = 0;
+        private long myWipeouts = 0;
+
+        /**
+         * @return the number of times the technique ran
+         */
+        public long getCalls(){
+            return myCalls;
+        }
+
+        /**
+         * @return the number of runs that changed the grid
+         */
+        public long getFired(){
+            return myFired;
+        }
+
+        /**
+         * @return the number of cell and candidate changes made
+         */
+        public long getChanges(){
+            return myChanges;
+        }
+
+        /**
+         * @return the total time spent in the technique in nanoseconds
+         */
+        public long getNanos(){
+            return myNanos;
+        }
+
+        /**
+         * @return the number of times the technique emptied a branch
+         */
+        public long getWipeouts(){
+            return myWipeouts;
+        }
+
+        public String toString(){
+            return String.format("%d calls, %d fired, %d changes, %.3f ms, %d wipeouts", myCalls, myFired, myChanges, myNanos/1e6, myWipeouts);
+        }
+    }
+
+    /**
+     * A finished solve
+     */
+    @Name("sudoku.Solve")
+    @Label("Sudoku Solve")
+    @Category("Sudoku")
+    @StackTrace(false)
+    static final class SolveEvent extends Event {
+        @Label("Solved")
+        boolean solved;
+        @Label("Nodes")
+        long nodes;
+        @Label("Backtracks")
+        long backtracks;
+        @Label("Max Depth")
+        int maxDepth;
+        @Label("Elapsed")
+        @Timespan(Timespan.NANOSECONDS)
+        long elapsed;
+    }
+
+    /**
+     * The totals of one rule over a finished solve
+     */
+    @Name("sudoku.Rule")
+    @Label("Sudoku Rule")
+    @Category("Sudoku")
+    @StackTrace(false)
+    static final class RuleEvent extends Event {
+        @Label("Rule")
+        String rule;
+        @Label("Calls")
+        long calls;
+        @Label("Time")
+        @Timespan(Timespan.NANOSECONDS)
+        long time;
+        @Label("Wipeouts")
+        long wipeouts;
+    }
+
+    /**
+     * The totals of one deduction technique over a finished solve
+     */
+    @Name("sudoku.Technique")
+    @Label("Sudoku Technique")
+    @Category("Sudoku")
+    @StackTrace(false)
+    static final class TechniqueEvent extends Event {
+        @Label("Technique")
+        String technique;
+        @Label("Calls")
+        long calls;
+        @Label("Fired")
+        long fired;
+        @Label("Changes")
+        long changes;
+        @Label("Time")
+        @Timespan(Timespan.NANOSECONDS)
+        long time;
+        @Label("Wipeouts")
+        long wipeouts;
+    }
+}
@@ -1,59 +1,489 @@
 import java.util.*;
-import java.util.stream.Collectors;
-import java.util.stream.Stream;
 
 public class Sudoku {
-    private List<List<Integer>> myGrid;
-    private Map<String, List<List<Integer>>> myRules;
-    private Map<Integer, Set<Integer>> myCandidates;
+    /** Number of rows, columns and digits in the classic grid, the size used when none is given */
+    public static final int SIZE = 9;
+    /** Number of cells in the classic grid */
+    public static final int CELLS = SIZE*SIZE;
+    /** Candidate mask with every digit of the classic grid set, bit (v-1) stands for digit v */
+    public static final int ALL = (1 << SIZE) - 1;
+    /** Largest grid size, whose candidates still fit in an int mask */
+    public static final int MAX_SIZE = 25;
+
+    private final int[] myCells;
+    private final int[] myMasks;
+    private final ConstraintGraph myGraph;
+    private final int mySize;
+    private final int myAll;
+    private final Trail myTrail;
+    private final int[] myQueue;
+    private final boolean[] myQueued;
+    private int myHead = 0;
+    private int myQueueSize = 0;
 
     /**
      * Create a Sudoku from parameters
-     * @param grid initial Sudoku grid
+     * @param grid initial Sudoku grid, its number of rows is the size of the grid
      * @param rules of the Sudoku grid
      */
     public Sudoku(List<List<Integer>> grid, Map<String, List<List<Integer>>> rules){
-        myGrid = grid;
-        myRules = rules;
+        this(flatten(grid), rules);
+    }
+
+    /**
+     * Create a Sudoku from a flat row-major array of cells, 0 for an empty cell
+     * @param cells initial Sudoku cells, owned by the Sudoku afterwards; there are 16, 81, 256
+     * or 625 of them for a 4x4, 9x9, 16x16 or 25x25 grid
+     * @param rules of the Sudoku grid
+     */
+    public Sudoku(int[] cells, Map<String, List<List<Integer>>> rules){
+        this(cells, ConstraintGraph.compile(rules, sizeOf(cells.length)));
+    }
+
+    /**
+     * Create a Sudoku sharing rules that are already compiled, e.g. across a batch of puzzles
+     * @param cells initial Sudoku cells, owned by the Sudoku afterwards
+     * @param graph the compiled rules of the Sudoku grid
+     */
+    public Sudoku(int[] cells, ConstraintGraph graph){
+        int count = graph.getCellCount();
+        if (cells.length != count) throw new IllegalArgumentException("Expected " + count + " cells, found " + cells.length);
+        myCells = cells;
+        myGraph = graph;
+        mySize = graph.getSize();
+        myAll = (1 << mySize) - 1;
+        myMasks = new int[count];
+        for (int i=0; i<count; i++){
+            myMasks[i] = cells[i] == 0 ? myAll : bit(cells[i]);
+        }
+        myTrail = new Trail(4*count);
+        myQueue = new int[count];
+        myQueued = new boolean[count];
+    }
+
+    /**
+     * Create an independent copy of another Sudoku, starting with an empty trail
+     * @param other the Sudoku to copy
+     */
+    public Sudoku(Sudoku other){
+        myCells = other.myCells.clone();
+        myMasks = other.myMasks.clone();
+        myGraph = other.myGraph;
+        mySize = other.mySize;
+        myAll = other.myAll;
+        myTrail = new Trail(4*myCells.length);
+        myQueue = new int[myCells.length];
+        myQueued = new boolean[myCells.length];
+    }
 
-        Map<Integer, Set<Integer>> candidates = new HashMap<>();
-        for (int i=0; i<81; i++){
-            if (grid.get(i/9).get(i%9) == 0) {
-                candidates.put(i, Stream.of(1, 2, 3, 4, 5, 6, 7, 8, 9).collect(Collectors.toCollection(HashSet::new)));
-            }
-            else {
-                candidates.put(i, new HashSet(Arrays.asList(grid.get(i/9).get(i%9))));
-            }
+    /**
+     * Replace the whole grid with new cells, keeping the rules, so one Sudoku can be reused for
+     * many puzzles; the trail and change queue are emptied
+     * @param cells new cells, 0 for an empty cell
+     * @param offset position of the first cell in the array
+     */
+    public void load(int[] cells, int offset){
+        for (int i=0; i<myCells.length; i++){
+            int value = cells[offset+i];
+            myCells[i] = value;
+            myMasks[i] = value == 0 ? myAll : bit(value);
         }
-        myCandidates = candidates;
+        myTrail.clear();
+        clearChanged();
+    }
+
+    /**
+     * @return the number of rows, columns and digits of the grid
+     */
+    public int getSize(){
+        return mySize;
     }
 
     /**
-     * @return current grid
+     * @return the number of cells of the grid
+     */
+    public int getCellCount(){
+        return myCells.length;
+    }
+
+    /**
+     * @return the candidate mask with every digit of the grid set
+     */
+    public int getAllMask(){
+        return myAll;
+    }
+
+    /**
+     * @param idx the cell index, row*size+col
+     * @return the digit in the cell, 0 if empty
+     */
+    public int getCell(int idx){
+        return myCells[idx];
+    }
+
+    /**
+     * @param idx the cell index, row*size+col
+     * @param value the new digit of the cell, 0 to clear it
+     */
+    public void setCell(int idx, int value){
+        myTrail.push(idx, myCells[idx], myMasks[idx]);
+        myCells[idx] = value;
+    }
+
+    /**
+     * @param idx the cell index, row*size+col
+     * @return the candidate mask of the cell
+     */
+    public int getMask(int idx){
+        return myMasks[idx];
+    }
+
+    /**
+     * @param idx the cell index, row*size+col
+     * @param mask the new candidate mask of the cell
+     */
+    public void setMask(int idx, int mask){
+        if (myMasks[idx] == mask) return;
+        myTrail.push(idx, myCells[idx], myMasks[idx]);
+        myMasks[idx] = mask;
+        markChanged(idx);
+    }
+
+    /**
+     * Place a digit, leaving it as the only candidate of the cell
+     * @param idx the cell index, row*size+col
+     * @param value the digit to place
+     */
+    public void assign(int idx, int value){
+        myTrail.push(idx, myCells[idx], myMasks[idx]);
+        myCells[idx] = value;
+        myMasks[idx] = bit(value);
+        markChanged(idx);
+    }
+
+    /**
+     * @param idx the cell index, row*size+col
+     * @param value the candidate to remove
+     * @return true iff the candidate was present
+     */
+    public boolean removeCandidate(int idx, int value){
+        int mask = myMasks[idx];
+        if (value < 1 || value > mySize || (mask & bit(value)) == 0) return false;
+        myTrail.push(idx, myCells[idx], mask);
+        myMasks[idx] = mask & ~bit(value);
+        markChanged(idx);
+        return true;
+    }
+
+    /**
+     * Queue a cell whose candidates changed, so propagation can visit what touches it
+     * @param idx the cell index, row*size+col
+     */
+    public void markChanged(int idx){
+        if (myQueued[idx]) return;
+        myQueued[idx] = true;
+        myQueue[(myHead+myQueueSize)%myQueue.length] = idx;
+        myQueueSize++;
+    }
+
+    /**
+     * @return the oldest cell whose candidates changed since it was last polled, -1 if none
+     */
+    public int pollChanged(){
+        if (myQueueSize == 0) return -1;
+        int idx = myQueue[myHead];
+        myHead = (myHead+1)%myQueue.length;
+        myQueueSize--;
+        myQueued[idx] = false;
+        return idx;
+    }
+
+    /**
+     * Forget every queued cell, e.g. after propagation found a contradiction
+     */
+    public void clearChanged(){
+        while (pollChanged() != -1);
+    }
+
+    /**
+     * Every change to cells and candidates is recorded on a trail, so it can be undone
+     * @return the current position of the trail
+     */
+    public int mark(){
+        return myTrail.mark();
+    }
+
+    /**
+     * Undo every change to cells and candidates made since a mark
+     * @param mark a position returned by mark()
+     */
+    public void undo(int mark){
+        myTrail.undo(mark, myCells, myMasks);
+    }
+
+    /**
+     * @return current grid, as a view backed by the cells
      */
     public List<List<Integer>> getGrid(){
-        return myGrid;
+        return new GridView();
     }
 
     /**
      * @return all rules of the Sudoku
      */
     public Map<String, List<List<Integer>>> getRules(){
-        return myRules;
+        return myGraph.getRules();
     }
 
     /**
-     * @return all candidates of the Sudoku
+     * @return the rules of the Sudoku, compiled into per-cell lookups
+     */
+    public ConstraintGraph getConstraintGraph(){
+        return myGraph;
+    }
+
+    /**
+     * @return all candidates of the Sudoku, as a view backed by the candidate masks
      */
     public Map<Integer, Set<Integer>> getCandidates(){
-        return myCandidates;
+        return new CandidateView();
     }
 
     /**
      * @param newCandidates updated new candidates of the Sudoku
      */
     public void updateCandidates(Map<Integer, Set<Integer>> newCandidates){
-        myCandidates = newCandidates;
+        for (int i=0; i<myCells.length; i++){
+            setMask(i, toMask(newCandidates.get(i)));
+        }
+    }
+
+    /**
+     * @param value a digit from 1 to the grid size
+     * @return the candidate mask holding only that digit
+     */
+    public static int bit(int value){
+        return 1 << (value-1);
+    }
+
+    /**
+     * @param low the smallest digit
+     * @param high the largest digit
+     * @return the candidate mask of every digit from low to high, empty if low > high; digits
+     * beyond MAX_SIZE are left out, so callers intersect it with a mask of their grid
+     */
+    public static int range(int low, int high){
+        low = Math.max(low, 1);
+        high = Math.min(high, MAX_SIZE);
+        if (low > high) return 0;
+        return ((1 << high) - 1) & ~((1 << (low-1)) - 1);
+    }
+
+    /**
+     * @param mask a candidate mask
+     * @return the number of candidates in the mask
+     */
+    public static int bitCount(int mask){
+        return Integer.bitCount(mask);
+    }
+
+    /**
+     * @param mask a non-empty candidate mask
+     * @return the smallest digit in the mask
+     */
+    public static int lowestDigit(int mask){
+        return Integer.numberOfTrailingZeros(mask)+1;
+    }
+
+    /**
+     * @param mask a non-empty candidate mask
+     * @return the largest digit in the mask
+     */
+    public static int highestDigit(int mask){
+        return 32-Integer.numberOfLeadingZeros(mask);
+    }
+
+    /**
+     * @param cellCount the number of cells of a grid
+     * @return the size of the grid, its number of rows, columns and digits
+     */
+    public static int sizeOf(int cellCount){
+        int size = (int) Math.round(Math.sqrt(cellCount));
+        if (size*size != cellCount) throw new IllegalArgumentException("A grid has a square number of cells: " + cellCount);
+        return size;
+    }
+
+    /**
+     * @param grid a size by size grid
+     * @return the grid as a flat row-major array
+     */
+    private static int[] flatten(List<List<Integer>> grid){
+        int size = grid.size();
+        int[] cells = new int[size*size];
+        for (int i=0; i<cells.length; i++){
+            cells[i] = grid.get(i/size).get(i%size);
+        }
+        return cells;
+    }
+
+    /**
+     * @param candidates a set of digits, may be null
+     * @return the candidate mask of the set
+     */
+    private int toMask(Set<Integer> candidates){
+        int mask = 0;
+        if (candidates == null) return mask;
+        for (int value : candidates){
+            if (value >= 1 && value <= mySize) mask |= bit(value);
+        }
+        return mask;
+    }
+
+    /**
+     * Rows of the grid, backed by the cells
+     */
+    private final class GridView extends AbstractList<List<Integer>> {
+        public List<Integer> get(int row){
+            if (row < 0 || row >= mySize) throw new IndexOutOfBoundsException("Row " + row);
+            return new RowView(row);
+        }
+
+        public int size(){
+            return mySize;
+        }
+    }
+
+    /**
+     * One row of the grid, backed by the cells
+     */
+    private final class RowView extends AbstractList<Integer> {
+        private final int myRow;
+
+        RowView(int row){
+            myRow = row;
+        }
+
+        public Integer get(int col){
+            if (col < 0 || col >= mySize) throw new IndexOutOfBoundsException("Column " + col);
+            return myCells[myRow*mySize+col];
+        }
+
+        public Integer set(int col, Integer value){
+            int old = get(col);
+            setCell(myRow*mySize+col, value);
+            return old;
+        }
+
+        public int size(){
+            return mySize;
+        }
+    }
+
+    /**
+     * Candidates of every cell, backed by the candidate masks
+     */
+    private final class CandidateView extends AbstractMap<Integer, Set<Integer>> {
+        public Set<Integer> get(Object key){
+            if (!containsKey(key)) return null;
+            return new CandidateSet((Integer) key);
+        }
+
+        public Set<Integer> put(Integer key, Set<Integer> value){
+            Set<Integer> old = new HashSet<>(get(key));
+            setMask(key, toMask(value));
+            return old;
+        }
+
+        public boolean containsKey(Object key){
+            return key instanceof Integer && (Integer) key >= 0 && (Integer) key < myCells.length;
+        }
+
+        public int size(){
+            return myCells.length;
+        }
+
+        public Set<Entry<Integer, Set<Integer>>> entrySet(){
+            return new AbstractSet<>() {
+                public Iterator<Entry<Integer, Set<Integer>>> iterator(){
+                    return new Iterator<>() {
+                        private int myIdx = 0;
+
+                        public boolean hasNext(){
+                            return myIdx < myCells.length;
+                        }
+
+                        public Entry<Integer, Set<Integer>> next(){
+                            if (!hasNext()) throw new NoSuchElementException();
+                            int idx = myIdx++;
+                            return new SimpleEntry<>(idx, new CandidateSet(idx));
+                        }
+                    };
+                }
+
+                public int size(){
+                    return myCells.length;
+                }
+            };
+        }
+    }
+
+    /**
+     * Candidates of one cell, backed by its candidate mask
+     */
+    private final class CandidateSet extends AbstractSet<Integer> {
+        private final int myIdx;
+
+        CandidateSet(int idx){
+            myIdx = idx;
+        }
+
+        public boolean contains(Object o){
+            return o instanceof Integer && (Integer) o >= 1 && (Integer) o <= mySize
+                    && (myMasks[myIdx] & bit((Integer) o)) != 0;
+        }
+
+        public boolean add(Integer value){
+            if (value < 1 || value > mySize) throw new IllegalArgumentException("Digit " + value);
+            int old = myMasks[myIdx];
+            setMask(myIdx, old | bit(value));
+            return old != myMasks[myIdx];
+        }
+
+        public boolean remove(Object o){
+            return o instanceof Integer && removeCandidate(myIdx, (Integer) o);
+        }
+
+        public void clear(){
+            setMask(myIdx, 0);
+        }
+
+        public int size(){
+            return bitCount(myMasks[myIdx]);
+        }
+
+        public Iterator<Integer> iterator(){
+            return new Iterator<>() {
+                private int myRemaining = myMasks[myIdx];
+                private int myLast = 0;
+
+                public boolean hasNext(){
+                    return myRemaining != 0;
+                }
+
+                public Integer next(){
+                    if (myRemaining == 0) throw new NoSuchElementException();
+                    myLast = lowestDigit(myRemaining);
+                    myRemaining &= myRemaining-1;
+                    return myLast;
+                }
+
+                public void remove(){
+                    if (myLast == 0) throw new IllegalStateException();
+                    removeCandidate(myIdx, myLast);
+                    myLast = 0;
+                }
+            };
+        }
     }
 
     /**
@@ -61,11 +491,12 @@ public class Sudoku {
      */
     public String toString(){
         StringBuilder print = new StringBuilder();
-        print.append("Grid: " + myGrid.get(0).toString() + "\n");
-        for (int i=1; i<9; i++){
-            print.append("      " + myGrid.get(i).toString() + "\n");
+        List<List<Integer>> grid = getGrid();
+        print.append("Grid: " + grid.get(0).toString() + "\n");
+        for (int i=1; i<mySize; i++){
+            print.append("      " + grid.get(i).toString() + "\n");
         }
-        print.append("Rules: " + myRules.toString());
+        print.append("Rules: " + getRules().toString());
         return print.toString();
     }
-}
\ No newline at end of file
+}
@@ -0,0 +1,139 @@
+import java.lang.management.ManagementFactory;
+import java.util.*;
+
+/**
+ * Throughput and allocation benchmarks of the solver: full solve, solve with Deductions.ALL,
+ * prune and isValid for every example in Examples, and full solve of the known-hard classic
+ * puzzles.
+ *
+ * Each benchmark is warmed up, then run repeatedly for a fixed time; it reports operations per
+ * second and bytes allocated per operation, measured on the benchmark thread.
+ *
+ * Usage: SudokuBenchmark [-w warmupSeconds] [-m measureSeconds] [filter ...], where a benchmark
+ * runs if its name contains any of the filters, e.g. "solve/grid5" or "prune/"
+ */
+public final class SudokuBenchmark {
+    private static final com.sun.management.ThreadMXBean THREADS =
+            (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+
+    /** Keeps results alive so the JIT cannot drop the benchmarked work */
+    private static long sink = 0;
+
+    private SudokuBenchmark(){
+    }
+
+    public static void main(String[] args){
+        double warmup = 1;
+        double measure = 3;
+        List<String> filters = new ArrayList<>();
+        for (int i=0; i<args.length; i++){
+            if (args[i].equals("-w")) warmup = Double.parseDouble(args[++i]);
+            else if (args[i].equals("-m")) measure = Double.parseDouble(args[++i]);
+            else filters.add(args[i]);
+        }
+
+        Map<String, Runnable> benchmarks = new LinkedHashMap<>();
+        // Its threads are daemons, and bytes/op only counts what the calling thread allocates
+        PortfolioSolver portfolio = new PortfolioSolver();
+        for (Examples.Example example : Examples.all()){
+            ConstraintGraph graph = ConstraintGraph.compile(example.getRules(), example.getSize());
+            String name = example.getName();
+            benchmarks.put("solve/" + name, () -> consume(SudokuSolver.solver(example.create(graph))));
+            SolveOptions logic = SolveOptions.DEFAULT.withStrategy(SearchStrategy.DEFAULT).withDeductions(Deductions.ALL);
+            benchmarks.put("solve-logic/" + name, () -> consume(SudokuSolver.solve(example.create(graph), logic).getSolution()));
+            benchmarks.put("solve-portfolio/" + name, () -> consume(portfolio.solve(example.create(graph)).getResult().getSolution()));
+            benchmarks.put("prune/" + name, () -> {
+                Sudoku s = example.create(graph);
+                consume(SudokuSolver.prune(s) ? s : null);
+            });
+            Sudoku solved = SudokuSolver.solver(example.create(graph));
+            if (solved != null){
+                benchmarks.put("isValid/" + name, () -> {
+                    int valid = 0;
+                    int size = solved.getSize();
+                    for (int i=0; i<solved.getCellCount(); i++){
+                        if (SudokuSolver.isValid(solved, i/size, i%size)) valid++;
+                    }
+                    sink += valid;
+                });
+            }
+        }
+        for (Examples.Example example : Examples.hard()){
+            ConstraintGraph graph = ConstraintGraph.compile(example.getRules());
+            benchmarks.put("solve/hard/" + example.getName(), () -> consume(SudokuSolver.solver(example.create(graph))));
+            benchmarks.put("solve/hard-backtracking/" + example.getName(),
+                    () -> consume(SudokuSolver.solver(example.create(graph), SearchStrategy.DEFAULT)));
+        }
+
+        System.out.printf("%-40s %14s %14s %16s%n", "Benchmark", "ops/s", "us/op", "bytes/op");
+        for (Map.Entry<String, Runnable> benchmark : benchmarks.entrySet()){
+            if (!filters.isEmpty() && filters.stream().noneMatch(benchmark.getKey()::contains)) continue;
+            Result result = run(benchmark.getValue(), warmup, measure);
+            System.out.printf("%-40s %14.1f %14.2f %16.0f%n", benchmark.getKey(),
+                    result.myOpsPerSecond, 1e6/result.myOpsPerSecond, result.myBytesPerOp);
+        }
+        if (sink == 42) System.out.println();
+    }
+
+    /**
+     * Run one benchmark
+     * @param benchmark the operation to measure
+     * @param warmup seconds to run before measuring
+     * @param measure seconds to measure for
+     * @return throughput and allocation of the operation
+     */
+    public static Result run(Runnable benchmark, double warmup, double measure){
+        long thread = Thread.currentThread().getId();
+        runFor(benchmark, warmup);
+        long bytes = THREADS.getThreadAllocatedBytes(thread);
+        long start = System.nanoTime();
+        long ops = runFor(benchmark, measure);
+        long elapsed = System.nanoTime()-start;
+        bytes = THREADS.getThreadAllocatedBytes(thread)-bytes;
+        return new Result(ops*1e9/elapsed, (double) bytes/ops);
+    }
+
+    /**
+     * @return how many times the benchmark ran, at least once
+     */
+    private static long runFor(Runnable benchmark, double seconds){
+        long end = System.nanoTime() + (long) (seconds*1e9);
+        long ops = 0;
+        do {
+            benchmark.run();
+            ops++;
+        } while (System.nanoTime() < end);
+        return ops;
+    }
+
+    private static void consume(Sudoku s){
+        sink += s == null ? 1 : s.getCell(0) + s.getCell(s.getCellCount()-1);
+    }
+
+    /**
+     * Outcome of one benchmark
+     */
+    public static final class Result {
+        private final double myOpsPerSecond;
+        private final double myBytesPerOp;
+
+        Result(double opsPerSecond, double bytesPerOp){
+            myOpsPerSecond = opsPerSecond;
+            myBytesPerOp = bytesPerOp;
+        }
+
+        /**
+         * @return operations per second
+         */
+        public double getOpsPerSecond(){
+            return myOpsPerSecond;
+        }
+
+        /**
+         * @return bytes allocated per operation
+         */
+        public double getBytesPerOp(){
+            return myBytesPerOp;
+        }
+    }
+}
@@ -0,0 +1,149 @@
+import java.util.*;
+import java.util.concurrent.*;
+
+/**
+ * Generates puzzles with a unique solution under any set of rules: a random complete grid is
+ * found by search with a random value order, then clues are removed in a random order, each
+ * removal kept only if the puzzle still has exactly one solution.
+ *
+ * Every puzzle is derived from the generator seed and its position alone, so a run is
+ * reproducible whatever the number of threads.
+ */
+public final class SudokuGenerator {
+    private final ConstraintGraph myGraph;
+    private final int myCells;
+    private final long mySeed;
+    private final ThreadLocal<Sudoku> mySudokus;
+
+    /**
+     * @param graph the compiled rules every puzzle must follow
+     * @param seed the seed every puzzle is derived from
+     */
+    public SudokuGenerator(ConstraintGraph graph, long seed){
+        myGraph = graph;
+        myCells = graph.getCellCount();
+        mySeed = seed;
+        mySudokus = ThreadLocal.withInitial(() -> new Sudoku(new int[graph.getCellCount()], graph));
+    }
+
+    /**
+     * Usage: SudokuGenerator count seed [threads] [size] [rule ...], the size as in "16x16"
+     * defaults to 9x9 and the rules to normal; one puzzle per line is written to standard output
+     * in the format gridParser reads
+     */
+    public static void main(String[] args) throws InterruptedException {
+        if (args.length < 2){
+            System.err.println("Usage: SudokuGenerator count seed [threads] [size] [rule ...]");
+            System.exit(2);
+        }
+        int count = Integer.parseInt(args[0]);
+        long seed = Long.parseLong(args[1]);
+        int threads = Runtime.getRuntime().availableProcessors();
+        int first = 2;
+        if (args.length > 2 && args[2].matches("\\d+")){
+            threads = Integer.parseInt(args[2]);
+            first = 3;
+        }
+        int size = Sudoku.SIZE;
+        if (args.length > first && args[first].matches("\\d+x\\d+")){
+            size = Integer.parseInt(args[first].substring(0, args[first].indexOf('x')));
+            first++;
+        }
+        Map<String, List<List<Integer>>> rules = new HashMap<>();
+        for (int i=first; i<args.length; i++) rules.put(args[i], null);
+        if (rules.isEmpty()) rules.put("normal", null);
+
+        long start = System.nanoTime();
+        List<String> puzzles = new SudokuGenerator(ConstraintGraph.compile(rules, size), seed).generate(count, threads);
+        double seconds = (System.nanoTime()-start)/1e9;
+        StringBuilder out = new StringBuilder(count*(size*size+1));
+        for (String puzzle : puzzles) out.append(puzzle).append('\n');
+        System.out.print(out);
+        System.err.printf("Generated %d puzzles in %.3f s (%.0f puzzles/s)%n", count, seconds, count/seconds);
+    }
+
+    /**
+     * Generate puzzles in parallel
+     * @param count number of puzzles
+     * @param threads number of worker threads
+     * @return the puzzles, one character per cell with '0' for an empty cell, in the order of their
+     * positions 0 to count-1
+     */
+    public List<String> generate(int count, int threads) throws InterruptedException {
+        ExecutorService workers = Executors.newFixedThreadPool(threads);
+        try {
+            List<Future<String>> futures = new ArrayList<>(count);
+            for (int i=0; i<count; i++){
+                long position = i;
+                futures.add(workers.submit(() -> toString(generate(position))));
+            }
+            List<String> puzzles = new ArrayList<>(count);
+            for (Future<String> future : futures){
+                try {
+                    puzzles.add(future.get());
+                }
+                catch (ExecutionException e){
+                    if (e.getCause() instanceof RuntimeException) throw (RuntimeException) e.getCause();
+                    throw new IllegalStateException(e.getCause());
+                }
+            }
+            return puzzles;
+        }
+        finally {
+            workers.shutdownNow();
+        }
+    }
+
+    /**
+     * Generate one puzzle
+     * @param position which puzzle of the generator's sequence to make
+     * @return the puzzle cells, 0 for an empty cell
+     */
+    public int[] generate(long position){
+        SplittableRandom random = new SplittableRandom(mySeed ^ position*0x9E3779B97F4A7C15L);
+        int[] puzzle = solution(random.nextLong());
+
+        // Remove clues in a random order, keeping the solution unique
+        int[] order = new int[myCells];
+        for (int i=0; i<myCells; i++){
+            int j = random.nextInt(i+1);
+            order[i] = order[j];
+            order[j] = i;
+        }
+        Sudoku s = mySudokus.get();
+        for (int idx : order){
+            int value = puzzle[idx];
+            puzzle[idx] = 0;
+            // The puzzle had a unique solution, so any new one must differ from it in this cell;
+            // one solve with the digit ruled out replaces counting to two
+            s.load(puzzle, 0);
+            s.removeCandidate(idx, value);
+            if (SudokuSolver.solver(s) != null) puzzle[idx] = value;
+        }
+        return puzzle;
+    }
+
+    /**
+     * @param seed seed of the random value order
+     * @return a random complete grid following the rules
+     */
+    private int[] solution(long seed){
+        Sudoku s = mySudokus.get();
+        s.load(new int[myCells], 0);
+        SearchStrategy strategy = new SearchStrategy(SearchStrategy.CellOrder.MRV, SearchStrategy.ValueOrder.RANDOM, seed);
+        if (SudokuSolver.solver(s, strategy) == null) throw new IllegalArgumentException("No grid follows the rules " + myGraph.getRules());
+        int[] cells = new int[myCells];
+        for (int i=0; i<myCells; i++) cells[i] = s.getCell(i);
+        return cells;
+    }
+
+    /**
+     * @param cells puzzle cells
+     * @return the one-character-per-cell line gridParser and cellParser read, 'A' for 10
+     */
+    public static String toString(int[] cells){
+        char[] line = new char[cells.length];
+        for (int i=0; i<cells.length; i++) line[i] = (char) (cells[i] < 10 ? '0'+cells[i] : 'A'+cells[i]-10);
+        return new String(line);
+    }
+}
@@ -1,360 +1,320 @@
 import java.util.*;
-import java.util.stream.Collectors;
-import java.util.stream.Stream;
+import java.util.concurrent.ForkJoinPool;
+import java.util.stream.*;
 
 public class SudokuSolver {
+    /**
+     * Solve a Sudoku, by exact cover when its rules allow it and by backtracking otherwise
+     * @param s the Sudoku
+     * @return the completed Sudoku, null if it has no solution
+     */
     public static Sudoku solver(Sudoku s){
-        prune(s);
-        return backTracking(s, 0);
+        if (DancingLinks.supports(s.getConstraintGraph())){
+            if (!prune(s)) return null;
+            return DancingLinks.solve(s);
+        }
+        return solver(s, SearchStrategy.DEFAULT);
     }
 
     /**
-     * Do an initial pruning of candidates given the rules
+     * Solve a Sudoku with the given branching heuristics
      * @param s the Sudoku
+     * @param strategy how cells and candidates are picked when branching
+     * @return the completed Sudoku, null if it has no solution
      */
-    public static void prune(Sudoku s){
-        List<List<Integer>> grid = s.getGrid();
-        Map<String, List<List<Integer>>> rules = s.getRules();
-        Map<Integer, Set<Integer>> candidates = s.getCandidates();
-        for (int row=0; row<9; row++){
-            for (int col=0; col<9; col++){
-                int value = grid.get(row).get(col);
-                if (value != 0){
-                    // Prune with normal rules
-                    if (rules.containsKey("normal")){
-                        for (int k=0; k<9; k++){
-                            if (k == row) continue;
-                            candidates.get(k*9+col).remove(value);
-                        }
-                        for (int k=0; k<9; k++){
-                            if (k == col) continue;
-                            candidates.get(row*9+k).remove(value);
-                        }
-                        for (int k=(row/3)*3; k<(row/3+1)*3; k++){
-                            for (int l=(col/3)*3; l<(col/3+1)*3; l++){
-                                if (k==row && l==col) continue;
-                                candidates.get(k*9+l).remove(value);
-                            }
-                        }
-                    }
-
-                    // Prune with knight rules
-                    if (rules.containsKey("knight")){
-                        int[] xdelta = {2, 1, -1, -2, -2, -1, 1, 2};
-                        int[] ydelta = {1, 2, 2, 1, -1, -2, -2, -1};
-                        for (int k=0; k<8; k++){
-                            if (isFilled(s,row+ydelta[k], col+xdelta[k])){
-                                candidates.get((row+ydelta[k])*9+(col+xdelta[k])).remove(value);
-                            }
-                        }
-                    }
-
-                    // Prune with king rules
-                    if (rules.containsKey("king")){
-                        int[] xdelta = {1, -1, -1, 1};
-                        int[] ydelta = {1, 1, -1, -1};
-                        for (int k=0; k<4; k++){
-                            if (isFilled(s,row+ydelta[k], col+xdelta[k])){
-                                candidates.get((row+ydelta[k])*9+(col+xdelta[k])).remove(value);
-                            }
-                        }
-                    }
-
-                    // Prune with thermo rules
-                    // Prune with diagonal rules
-                    if (rules.containsKey("diagonal")){
-                        if (row == col){
-                            for (int i=0; i<9; i++){
-                                if (i == row) continue;
-                                candidates.get(i*9+i).remove(value);
-                            }
-                        }
-                        if (row == 8-col){
-                            for (int i=0; i<9; i++){
-                                if (i == row) continue;
-                                candidates.get(i*9+8-i).remove(value);
-                            }
-                        }
-                    }
-
-                    // Prune with disjoint rules
-                    if (rules.containsKey("disjoint")){
-                        int[] xdelta = {0, 3, 6, 0, 3, 6, 0, 3, 6};
-                        int[] ydelta = {0, 0, 0, 3, 3, 3, 6, 6, 6};
-                        for (int i=0; i<9; i++){
-                            if (row%3+ydelta[i] == row && col%3+xdelta[i] == col) continue;
-                            candidates.get((row%3+ydelta[i])*9+(col%3+xdelta[i])).remove(value);
-                        }
-                    }
-
-                    // Prune with nonconsecutive rules
-                    if (rules.containsKey("nonconsecutive")){
-                        int[] xdelta = {1, 0, -1, 0};
-                        int[] ydelta = {0, 1, 0, -1};
-                        for (int k=0; k<4; k++){
-                            if (isFilled(s,row+ydelta[k], col+xdelta[k])){
-                                candidates.get((row+ydelta[k])*9+(col+xdelta[k])).remove(value-1);
-                                candidates.get((row+ydelta[k])*9+(col+xdelta[k])).remove(value+1);
-                            }
-                        }
-                    }
+    public static Sudoku solver(Sudoku s, SearchStrategy strategy){
+        if (!prune(s)) return null;
+        return backTracking(s, 0, strategy);
+    }
 
-                    // Prune with arrow rules
-                    // Prune with palindrome rules
-                    // Prune with XV rules
-                    if (rules.containsKey("xv")){
-                        List<List<Integer>> xvRules = rules.get("xv");
-                        for (List<Integer> xv : xvRules){
-                            if (xv.get(0)==5){
-                                for (int i=5; i<=9; i++){
-                                    candidates.get(xv.get(1)).remove(i);
-                                    candidates.get(xv.get(2)).remove(i);
-                                }
-                            }
-                            else{
-                                candidates.get(xv.get(1)).remove(5);
-                                candidates.get(xv.get(2)).remove(5);
-                            }
-                        }
-                    }
+    /**
+     * Solve a Sudoku with the given branching heuristics, recording what the search did
+     * @param s the Sudoku
+     * @param strategy how cells and candidates are picked when branching
+     * @param stats where the counters of the solve are recorded, null to record nothing
+     * @return the completed Sudoku, null if it has no solution
+     */
+    public static Sudoku solver(Sudoku s, SearchStrategy strategy, SolverStats stats){
+        long start = System.nanoTime();
+        Sudoku solution = prune(s, stats) ? backTracking(s, 0, new SearchContext(strategy, stats)) : null;
+        if (stats != null) stats.finish(start, solution != null);
+        return solution;
+    }
 
-                    // Prune with kropki rules
-                    if (rules.containsKey("kropki")){
-                        List<List<Integer>> kropkiRules = rules.get("kropki");
-                        for (List<Integer> kropki : kropkiRules){
-                            if (kropki.get(0)==2){
-                                for (int i=5; i<=9; i+=2){
-                                    candidates.get(kropki.get(1)).remove(i);
-                                    candidates.get(kropki.get(2)).remove(i);
-                                }
-                            }
-                        }
-                    }
-                }
+    /**
+     * Solve a Sudoku within a time and node budget, stopping early if cancelled; whatever the
+     * outcome, the Sudoku is left with at least the candidates pruning removed
+     * @param s the Sudoku
+     * @param options the limits, strategy and stats of the solve
+     * @return how the solve ended, with the solution if one was found
+     */
+    public static SolveResult solve(Sudoku s, SolveOptions options){
+        long start = System.nanoTime();
+        SolverStats stats = options.isRecordingStats() ? new SolverStats() : null;
+        SearchStrategy strategy = options.getStrategy() == null ? SearchStrategy.DEFAULT : options.getStrategy();
+        SearchContext context = new SearchContext(strategy, stats, options);
+        Sudoku solution = null;
+        if (prune(s, stats)){
+            // Exact cover keeps no stats and runs no deductions, so it is only picked when neither is wanted
+            if (options.getStrategy() == null && stats == null && options.getDeductions() == null
+                    && DancingLinks.supports(s.getConstraintGraph())){
+                solution = DancingLinks.solve(s, context);
+            }
+            else{
+                solution = backTracking(s, 0, context);
             }
         }
+        if (stats != null) stats.finish(start, solution != null);
+        SolveResult.Status status;
+        if (solution != null) status = SolveResult.Status.SOLVED;
+        else if (context.getStopReason() != null) status = context.getStopReason();
+        else status = SolveResult.Status.UNSOLVABLE;
+        return new SolveResult(status, solution, context.getNodes(), System.nanoTime()-start, stats);
+    }
 
+    /**
+     * Solve a Sudoku by splitting the top of the search tree across the common fork-join pool
+     * @param s the Sudoku
+     * @return the completed Sudoku, null if it has no solution
+     */
+    public static Sudoku parallelSolver(Sudoku s){
+        return ParallelSolver.solve(s, SearchStrategy.DEFAULT, ForkJoinPool.commonPool());
+    }
 
+    /**
+     * Do an initial pruning of candidates given the rules, then propagate from every cell
+     * @param s the Sudoku
+     * @return false iff the Sudoku has no solution
+     */
+    public static boolean prune(Sudoku s){
+        return prune(s, null);
     }
 
     /**
-     * Uses backtracking to solve the sudoku
+     * Do an initial pruning of candidates given the rules, then propagate from every cell
      * @param s the Sudoku
-     * @param idx the current cell backtracking is at
-     * @return the completed Sudoku
+     * @param stats where the time spent in each rule is recorded, null to record nothing
+     * @return false iff the Sudoku has no solution
      */
-    public static Sudoku backTracking(Sudoku s, int idx){
-        // If assignment is complete, return result
-        if (isDone(s)) return s;
-        // Move pointer to next empty square
-        while (s.getGrid().get(idx/9).get(idx%9) != 0) idx++;
-        // Row and column for easy access
-        int row = idx/9; int col = idx%9;
-        // Copy current candidates for this square
-        Set<Integer> tempCandidates = new HashSet<>(s.getCandidates().get(idx));
-        // Replacement candidate for this square
-        Set<Integer> newCandidates = new HashSet<>();
-        // If no candidates exist for this square, backtrack
-        if (tempCandidates.size() == 0) return null;
-        // Iterate through candidates
-        for (int value : tempCandidates){
-            // Try out each candidate
-            newCandidates.add(value);
-            s.getCandidates().put(idx, newCandidates);
-            s.getGrid().get(row).set(col, value);
-            // If grid is valid
-            if (isValid(s, row, col)){
-                Sudoku newS = backTracking(s, idx);
-                // If correct choice, return result
-                if (isDone(newS)){
-                    return newS;
-                }
-            }
-            // Backtrack if doesn't work
-            s.getCandidates().put(idx, tempCandidates);
-            s.getGrid().get(row).set(col, 0);
-            newCandidates.clear();
+    public static boolean prune(Sudoku s, SolverStats stats){
+        // Static pruning first, then every propagator runs from every cell
+        for (Constraint constraint : s.getConstraintGraph().getAllConstraints()){
+            long start = stats == null ? 0 : System.nanoTime();
+            constraint.prune(s);
+            if (stats != null) stats.record(constraint.getRule(), start, true);
         }
-        // No solution
-        return null;
+        for (int idx=0; idx<s.getCellCount(); idx++){
+            s.markChanged(idx);
+        }
+        return propagate(s, stats);
     }
 
     /**
-     * Check if a Sudoku is valid against its rules
+     * Forward checking: push the consequences of every changed cell through the rules until
+     * nothing more follows, placing cells that are left with a single candidate
      * @param s the Sudoku
-     * @param row the row of the new digit
-     * @param col the column of the new digit
-     * @return true iff it violates no rules
+     * @return false iff some cell has no candidates left or a rule is broken
      */
-    public static boolean isValid(Sudoku s, int row, int col){
-        Map<String, List<List<Integer>>> rules = s.getRules();
-        List<List<Integer>> grid = s.getGrid();
-        int value = grid.get(row).get(col);
+    public static boolean propagate(Sudoku s){
+        return propagate(s, null);
+    }
 
-        // Check normal sudoku rules
-        if (rules.containsKey("normal")){
-            for (int k=0; k<9; k++){
-                if (k == row) continue;
-                if (grid.get(k).get(col) == value) return false;
+    /**
+     * Forward checking: push the consequences of every changed cell through the rules until
+     * nothing more follows, placing cells that are left with a single candidate
+     * @param s the Sudoku
+     * @param stats where the time and wipeouts of each rule are recorded, null to record nothing
+     * @return false iff some cell has no candidates left or a rule is broken
+     */
+    public static boolean propagate(Sudoku s, SolverStats stats){
+        ConstraintGraph graph = s.getConstraintGraph();
+        int idx;
+        while ((idx = s.pollChanged()) != -1){
+            int mask = s.getMask(idx);
+            // If no candidates exist for this square, fail
+            if (mask == 0){
+                s.clearChanged();
+                return false;
             }
-            for (int k=0; k<9; k++){
-                if (k == col) continue;
-                if (grid.get(row).get(k) == value) return false;
+            int value = s.getCell(idx);
+            if (value == 0 && Sudoku.bitCount(mask) == 1){
+                value = Sudoku.lowestDigit(mask);
+                s.setCell(idx, value);
             }
-            for (int k=(row/3)*3; k<(row/3+1)*3; k++){
-                for (int l=(col/3)*3; l<(col/3+1)*3; l++){
-                    if (k==row && l==col) continue;
-                    if (grid.get(k).get(l) == value) return false;
-                }
-            }
-        }
-
-        // Check knight constraint
-        if (rules.containsKey("knight")){
-            int[] xdelta = {2, 1, -1, -2, -2, -1, 1, 2};
-            int[] ydelta = {1, 2, 2, 1, -1, -2, -2, -1};
-            for (int k=0; k<8; k++){
-                if (isFilled(s,row+ydelta[k], col+xdelta[k]) && grid.get(row+ydelta[k]).get(col+xdelta[k])==value){
+            if (value != 0){
+                // Prune with normal, knight, king, diagonal and disjoint rules
+                long start = stats == null ? 0 : System.nanoTime();
+                boolean ok = removeFromPeers(s, graph.getPeers(idx), value);
+                if (stats != null) stats.record("peers", start, ok);
+                if (!ok){
+                    s.clearChanged();
                     return false;
                 }
+                // Prune with nonconsecutive rules
+                int[] neighbours = graph.getNeighbours(idx);
+                if (neighbours.length > 0){
+                    start = stats == null ? 0 : System.nanoTime();
+                    ok = removeFromNeighbours(s, neighbours, value);
+                    if (stats != null) stats.record("nonconsecutive", start, ok);
+                    if (!ok){
+                        s.clearChanged();
+                        return false;
+                    }
+                }
             }
-        }
-
-        // Check king constraint
-        if (rules.containsKey("king")){
-            int[] xdelta = {1, -1, -1, 1};
-            int[] ydelta = {1, 1, -1, -1};
-            for (int k=0; k<4; k++){
-                if (isFilled(s,row+ydelta[k], col+xdelta[k]) && grid.get(row+ydelta[k]).get(col+xdelta[k])==value){
+            // Prune with the thermo, arrow, palindrome, XV, kropki and sandwich rules covering this cell
+            for (Constraint constraint : graph.getConstraints(idx)){
+                long start = stats == null ? 0 : System.nanoTime();
+                boolean ok = constraint.propagate(s);
+                if (stats != null) stats.record(constraint.getRule(), start, ok);
+                if (!ok){
+                    s.clearChanged();
                     return false;
                 }
             }
-        }
-
-        // Check thermo constraint
-        if (rules.containsKey("thermo")){
-            List<List<Integer>> thermoRules = rules.get("thermo");
-            for (List<Integer> thermo : thermoRules){
-                int location = thermo.indexOf(row*9+col);
-                if (location == -1) continue;
-                for (int i=0; i<thermo.size(); i++){
-                    int neighbor = grid.get(thermo.get(i)/9).get(thermo.get(i)%9);
-                    if (neighbor != 0){
-                        if (i<location && neighbor >= value - (location-i-1)) return false;
-                        if (i>location && value + (i-location-1) >= neighbor) return false;
+            // Hidden singles in the houses of this cell: beyond 9x9, eliminating candidates alone
+            // leaves the search too little to go on
+            if (s.getSize() > Sudoku.SIZE){
+                int[][] houses = graph.getHouses();
+                for (int house : graph.getHousesOf(idx)){
+                    long start = stats == null ? 0 : System.nanoTime();
+                    boolean ok = HiddenSingles.apply(s, houses[house]);
+                    if (stats != null) stats.record("hidden singles", start, ok);
+                    if (!ok){
+                        s.clearChanged();
+                        return false;
                     }
                 }
             }
         }
+        return true;
+    }
 
-        // Check diagonal constraint
-        if (rules.containsKey("diagonal")){
-            if (row == col){
-                for (int i=0; i<9; i++){
-                    if (i == row) continue;
-                    if (grid.get(i).get(i) == value) return false;
-                }
-            }
-            if (row == 8-col){
-                for (int i=0; i<9; i++){
-                    if (i == row) continue;
-                    if (grid.get(i).get(8-i) == value) return false;
-                }
-            }
+    /**
+     * Remove a placed digit from the cells that must differ from it
+     * @return false iff a peer holds the digit or is left without candidates
+     */
+    private static boolean removeFromPeers(Sudoku s, int[] peers, int value){
+        for (int peer : peers){
+            if (s.getCell(peer) == value) return false;
+            if (s.removeCandidate(peer, value) && s.getMask(peer) == 0) return false;
         }
+        return true;
+    }
 
-        // Check disjoint constraint
-        if (rules.containsKey("disjoint")){
-            int[] xdelta = {0, 3, 6, 0, 3, 6, 0, 3, 6};
-            int[] ydelta = {0, 0, 0, 3, 3, 3, 6, 6, 6};
-            for (int i=0; i<9; i++){
-                if (row%3+ydelta[i] == row && col%3+xdelta[i] == col) continue;
-                if (grid.get(row%3+ydelta[i]).get(col%3+xdelta[i]) == value) return false;
-            }
+    /**
+     * Remove the digits consecutive to a placed digit from its orthogonal neighbours
+     * @return false iff a neighbour is left without candidates
+     */
+    private static boolean removeFromNeighbours(Sudoku s, int[] neighbours, int value){
+        for (int neighbour : neighbours){
+            s.removeCandidate(neighbour, value-1);
+            s.removeCandidate(neighbour, value+1);
+            if (s.getMask(neighbour) == 0) return false;
         }
+        return true;
+    }
 
-        // Check nonconsecutive constraint
-        if (rules.containsKey("nonconsecutive")){
-            int[] xdelta = {1, 0, -1, 0};
-            int[] ydelta = {0, 1, 0, -1};
-            for (int k=0; k<4; k++){
-                if (isFilled(s,row+ydelta[k], col+xdelta[k]) && Math.abs(grid.get(row+ydelta[k]).get(col+xdelta[k])-value)==1){
-                    return false;
-                }
-            }
-        }
+    /**
+     * Uses backtracking to solve the sudoku in row-major order
+     * @param s the Sudoku
+     * @param idx the current cell backtracking is at
+     * @return the completed Sudoku
+     */
+    public static Sudoku backTracking(Sudoku s, int idx){
+        return backTracking(s, idx, SearchStrategy.ROW_MAJOR);
+    }
 
-        // Check arrow constraint
-        if (rules.containsKey("arrow")){
-            List<List<Integer>> arrowRules = rules.get("arrow");
-            for (List<Integer> arrow : arrowRules){
-                if (arrow.contains(row*9+col)){
-                    int arrowHead = grid.get(arrow.get(0)/9).get(arrow.get(0)%9)==0?9:grid.get(arrow.get(0)/9).get(arrow.get(0)%9);
-                    for (int i=1; i<arrow.size(); i++){
-                        arrowHead -= grid.get(arrow.get(i)/9).get(arrow.get(i)%9)==0?1:grid.get(arrow.get(i)/9).get(arrow.get(i)%9);
-                        if (arrowHead<0){
-                            return false;
-                        }
-                    }
-                }
-            }
-        }
+    /**
+     * Uses backtracking to solve the sudoku, propagating every guess and undoing each failed
+     * branch through the trail
+     * @param s the Sudoku
+     * @param idx the current cell backtracking is at
+     * @param strategy how cells and candidates are picked when branching
+     * @return the completed Sudoku
+     */
+    public static Sudoku backTracking(Sudoku s, int idx, SearchStrategy strategy){
+        return backTracking(s, idx, new SearchContext(strategy));
+    }
 
-        // Check palindrome constraint
-        if (rules.containsKey("palindrome")){
-            List<List<Integer>> palindromeRules = rules.get("palindrome");
-            for (List<Integer> palindrome : palindromeRules){
-                if (palindrome.contains(row*9+col)){
-                    for (int i=0; i<palindrome.size()/2; i++){
-                        int start = grid.get(palindrome.get(i)/9).get(palindrome.get(i)%9);
-                        int end = grid.get(palindrome.get(palindrome.size()-i-1)/9).get(palindrome.get(palindrome.size()-i-1)%9);
-                        if (start != 0 && end != 0 && start != end) return false;
-                    }
-                }
-            }
-        }
+    /**
+     * Uses backtracking to solve the sudoku, giving up once the context is cancelled
+     * @param s the Sudoku
+     * @param idx the current cell backtracking is at
+     * @param context the strategy and cancellation flag of the search
+     * @return the completed Sudoku, null if there is none or the search was cancelled
+     */
+    public static Sudoku backTracking(Sudoku s, int idx, SearchContext context){
+        SolutionIterator solutions = new SolutionIterator(s, idx, context);
+        return solutions.hasNext() ? solutions.next() : null;
+    }
 
-        // Check XV constraint
-        if (rules.containsKey("xv")){
-            List<List<Integer>> xvRules = rules.get("xv");
-            for (List<Integer> xv : xvRules){
-                int one = grid.get(xv.get(1)/9).get(xv.get(1)%9);
-                int two = grid.get(xv.get(2)/9).get(xv.get(2)%9);
-                if ((xv.get(1) == row*9+col || xv.get(2) == row*9+col) && one != 0 && two != 0) {
-                    if (one + two != xv.get(0)) return false;
-                }
-            }
-        }
+    /**
+     * Every solution of a Sudoku, found lazily one at a time as the stream is consumed
+     * @param s the Sudoku, which the search works on; each solution is handed out as a copy
+     * @return the solutions, empty if there are none
+     */
+    public static Stream<Sudoku> solutions(Sudoku s){
+        return solutions(s, SearchStrategy.DEFAULT);
+    }
 
-        // Check kropki constraint
-        if (rules.containsKey("kropki")){
-            List<List<Integer>> kropkiRules = rules.get("kropki");
-            for (List<Integer> kropki : kropkiRules){
-                int one = grid.get(kropki.get(1)/9).get(kropki.get(1)%9);
-                int two = grid.get(kropki.get(2)/9).get(kropki.get(2)%9);
-                if (one != 0 && two != 0){
-                    if (kropki.get(0)==1 && Math.abs(one-two) != 1) return false;
-                    if (kropki.get(0)==2 && one*2!=two && two*2!=one) return false;
-                }
-            }
-        }
+    /**
+     * Every solution of a Sudoku with the given branching heuristics, found lazily one at a time
+     * as the stream is consumed
+     * @param s the Sudoku, which the search works on; each solution is handed out as a copy
+     * @param strategy how cells and candidates are picked when branching
+     * @return the solutions, empty if there are none
+     */
+    public static Stream<Sudoku> solutions(Sudoku s, SearchStrategy strategy){
+        if (!prune(s)) return Stream.empty();
+        Iterator<Sudoku> solutions = new SolutionIterator(s, 0, new SearchContext(strategy));
+        return StreamSupport.stream(Spliterators.spliteratorUnknownSize(solutions,
+                Spliterator.ORDERED | Spliterator.NONNULL), false).map(Sudoku::new);
+    }
 
-        // Check sandwich constraint
-        if (rules.containsKey("sandwich")){
-            List<List<Integer>> sandwichRules = rules.get("sandwich");
-            /**
-            for (List<Integer> kropki : kropkiRules){
-                int one = grid.get(kropki.get(1)/9).get(kropki.get(1)%9);
-                int two = grid.get(kropki.get(2)/9).get(kropki.get(2)%9);
-                if (one != 0 && two != 0){
-                    if (kropki.get(0)==1 && Math.abs(one-two) != 1) return false;
-                    if (kropki.get(0)==2 && one*2!=two && two*2!=one) return false;
-                }
+    /**
+     * Count the solutions of a Sudoku, stopping as soon as the limit is reached; a limit of 2
+     * checks that a puzzle is unique
+     * @param s the Sudoku, left as it was
+     * @param limit the most solutions to look for, at least 1
+     * @return the number of solutions, at most limit
+     */
+    public static int countSolutions(Sudoku s, int limit){
+        return countSolutions(s, limit, SearchStrategy.DEFAULT);
+    }
+
+    /**
+     * Count the solutions of a Sudoku with the given branching heuristics, stopping as soon as
+     * the limit is reached; exact cover is used instead when the rules allow it
+     * @param s the Sudoku, left as it was
+     * @param limit the most solutions to look for, at least 1
+     * @param strategy how cells and candidates are picked when branching
+     * @return the number of solutions, at most limit
+     */
+    public static int countSolutions(Sudoku s, int limit, SearchStrategy strategy){
+        if (limit < 1) throw new IllegalArgumentException("Solution limit must be at least 1: " + limit);
+        int mark = s.mark();
+        int count = 0;
+        if (prune(s)){
+            if (DancingLinks.supports(s.getConstraintGraph())) count = DancingLinks.count(s, limit);
+            else{
+                SolutionIterator solutions = new SolutionIterator(s, 0, new SearchContext(strategy));
+                for (; count<limit && solutions.hasNext(); count++) solutions.next();
             }
-             **/
         }
+        s.undo(mark);
+        return count;
+    }
 
-        return true;
+    /**
+     * Check if a Sudoku is valid against its rules
+     * @param s the Sudoku
+     * @param row the row of the new digit
+     * @param col the column of the new digit
+     * @return true iff it violates no rules
+     */
+    public static boolean isValid(Sudoku s, int row, int col){
+        return s.getConstraintGraph().isValid(s, row*s.getSize()+col);
     }
 
     /**
@@ -364,7 +324,8 @@ public class SudokuSolver {
      * @return true if the entry is filled in the grid
      */
     public static boolean isFilled(Sudoku s, int row, int col){
-        return (0 <= row) && (row < 9) && (0 <= col) && (col < 9) && (s.getGrid().get(row).get(col)>0);
+        int size = s.getSize();
+        return (0 <= row) && (row < size) && (0 <= col) && (col < size) && (s.getCell(row*size+col)>0);
     }
 
     /**
@@ -374,11 +335,9 @@ public class SudokuSolver {
      */
     public static boolean isDone(Sudoku s){
         if (s == null) return false;
-        for (List<Integer> row : s.getGrid()){
-            for (int entry : row){
-                if (entry == 0){
-                    return false;
-                }
+        for (int i=0; i<s.getCellCount(); i++){
+            if (s.getCell(i) == 0){
+                return false;
             }
         }
         return true;
@@ -386,188 +345,118 @@ public class SudokuSolver {
 
     /**
      * Generation of a grid that the code can parse from a string
-     * @param grid a 81-length string
+     * @param grid a string cellParser accepts
      * @return A grid as a list of lists of integers
      */
     public static List<List<Integer>> gridParser(String grid){
+        int[] cells = cellParser(grid);
+        int size = Sudoku.sizeOf(cells.length);
         List<List<Integer>> newGrid = new ArrayList<>();
-        for (int i=0; i<9; i++){
+        for (int i=0; i<size; i++){
             List<Integer> row = new ArrayList<>();
-            for (int j=0; j<9; j++){
-                char c = grid.charAt(9*i+j);
-                row.add(c-'0');
+            for (int j=0; j<size; j++){
+                row.add(cells[size*i+j]);
             }
             newGrid.add(row);
         }
         return newGrid;
     }
 
-    public static void main(String[] args){
-        Map<String, List<List<Integer>>> rules = new HashMap<>();
-
-        // normal
-        rules.put("normal", null);
-        List<List<Integer>> grid1 = gridParser("005009400407010002008020095004000070000607000060000200980060300300090104001800600");
-        List<List<Integer>> grid = gridParser("000000000003010400100509000000020650350000089079030000000203008004060200000000000");
-
-        // knight
-        //rules.put("knight", null);
-        List<List<Integer>> grid3 = gridParser("000000000002300000010040000080050000007600000000000870000009006000002005000000340");
-
-        // king
-        //rules.put("king", null);
-        List<List<Integer>> grid4 = gridParser("000628000009000300060000010700000008400000005600000003080000090005000700000971000");
-
-        // thermo
-        //////////////////////////WARNING TIMEOUT/////////////////////////////////
-        List<List<Integer>> thermoRules = new ArrayList<>();
-        thermoRules.add(Arrays.asList(0, 10, 20, 30, 38, 46));
-        thermoRules.add(Arrays.asList(8, 16, 24, 32, 22, 12));
-        thermoRules.add(Arrays.asList(72, 64, 56, 48, 58, 68));
-        thermoRules.add(Arrays.asList(80, 70, 60, 50, 42, 34));
-        //rules.put("thermo", thermoRules);
-        List<List<Integer>> grid5 = gridParser("000000000000000000000900000000000005000000000000000300000000000000000800000009000");
-
-        // diagonal
-        //rules.put("diagonal", null);
-        List<List<Integer>> grid6 = gridParser("000902000000807000900050003007409300800205007060000050200301004000504000009000700");
-
-        // disjoint
-        //rules.put("disjoint", null);
-        List<List<Integer>> grid7 = gridParser("090040010100305006006000400000901050207030901000604000009000300700403009080060047");
-
-        // nonconsecutive and knight
-        //rules.put("nonconsecutive", null);
-        //rules.put("knight", null);
-        List<List<Integer>> grid8 = gridParser("000000000000000000000407000006000500000000000004000300000205000000000000000000000");
-
-        // nonconsecutive and knight and king
-        //rules.put("nonconsecutive", null);
-        //rules.put("knight", null);
-        //rules.put("king", null);
-        List<List<Integer>> grid9 = gridParser("000000000000000000000000000000000000001000000000000200000000000000000000000000000");
-
-        // arrow
-        List<List<Integer>> arrowRules = new ArrayList<>();
-        arrowRules.add(Arrays.asList(10, 19, 28));
-        arrowRules.add(Arrays.asList(11, 20, 29));
-        arrowRules.add(Arrays.asList(12, 21, 30));
-        arrowRules.add(Arrays.asList(16, 15, 14));
-        arrowRules.add(Arrays.asList(25, 24, 23));
-        arrowRules.add(Arrays.asList(34, 33, 32));
-        arrowRules.add(Arrays.asList(46, 47, 48));
-        arrowRules.add(Arrays.asList(55, 56, 57));
-        arrowRules.add(Arrays.asList(64, 65, 66));
-        arrowRules.add(Arrays.asList(68, 59, 50));
-        arrowRules.add(Arrays.asList(69, 60, 51));
-        arrowRules.add(Arrays.asList(70, 61, 52));
-        //rules.put("arrow", arrowRules);
-        List<List<Integer>> grid10 = gridParser("000000000034700060000000070000000090000000000080000000090000000060009850000000000");
-
-        // palindrome
-        List<List<Integer>> palindromeRules = new ArrayList<>();
-        palindromeRules.add(Arrays.asList(9, 19, 29));
-        palindromeRules.add(Arrays.asList(11, 21, 31));
-        palindromeRules.add(Arrays.asList(13, 23, 33));
-        palindromeRules.add(Arrays.asList(15, 25, 35));
-        palindromeRules.add(Arrays.asList(45, 55, 65));
-        palindromeRules.add(Arrays.asList(47, 57, 67));
-        palindromeRules.add(Arrays.asList(49, 59, 69));
-        palindromeRules.add(Arrays.asList(51, 61, 71));
-        //rules.put("palindrome", palindromeRules);
-        List<List<Integer>> grid11 = gridParser("002030400000905000000000000000000000320000078000000000000000000000504000506000809");
-
-        // XV
-        List<List<Integer>> xvRules = new ArrayList<>();
-        xvRules.add(Arrays.asList(5,0,9));
-        xvRules.add(Arrays.asList(5,6,15));
-        xvRules.add(Arrays.asList(5,14,15));
-        xvRules.add(Arrays.asList(5,21,30));
-        xvRules.add(Arrays.asList(5,28,37));
-        xvRules.add(Arrays.asList(5,44,53));
-        xvRules.add(Arrays.asList(5,49,58));
-        xvRules.add(Arrays.asList(10,2,3));
-        xvRules.add(Arrays.asList(10,7,8));
-        xvRules.add(Arrays.asList(10,4,13));
-        xvRules.add(Arrays.asList(10,15,16));
-        xvRules.add(Arrays.asList(10,23,32));
-        xvRules.add(Arrays.asList(10,31,32));
-        xvRules.add(Arrays.asList(10,34,35));
-        xvRules.add(Arrays.asList(10,36,37));
-        xvRules.add(Arrays.asList(10,42,43));
-        xvRules.add(Arrays.asList(10,40,49));
-        xvRules.add(Arrays.asList(10,41,50));
-        xvRules.add(Arrays.asList(10,57,58));
-        xvRules.add(Arrays.asList(10,61,62));
-        xvRules.add(Arrays.asList(10,63,64));
-        xvRules.add(Arrays.asList(10,66,67));
-        xvRules.add(Arrays.asList(10,70,71));
-        xvRules.add(Arrays.asList(10,79,80));
-        //rules.put("xv", xvRules);
-        List<List<Integer>> grid12 = gridParser("000000000000000000002000405000000000000000000000000000504000100000000000000000000");
-
-        // kropki
-        //////////////////////////WARNING TIMEOUT/////////////////////////////////
-        List<List<Integer>> kropkiRules = new ArrayList<>();
-        kropkiRules.add(Arrays.asList(1,3,4));
-        kropkiRules.add(Arrays.asList(1,2,11));
-        kropkiRules.add(Arrays.asList(1,14,15));
-        kropkiRules.add(Arrays.asList(1,18,19));
-        kropkiRules.add(Arrays.asList(1,24,33));
-        kropkiRules.add(Arrays.asList(1,27,36));
-        kropkiRules.add(Arrays.asList(1,33,42));
-        kropkiRules.add(Arrays.asList(1,36,45));
-        kropkiRules.add(Arrays.asList(1,39,48));
-        kropkiRules.add(Arrays.asList(1,41,50));
-        kropkiRules.add(Arrays.asList(1,48,49));
-        kropkiRules.add(Arrays.asList(1,55,64));
-        kropkiRules.add(Arrays.asList(1,65,74));
-        kropkiRules.add(Arrays.asList(2,6,15));
-        kropkiRules.add(Arrays.asList(2,16,25));
-        kropkiRules.add(Arrays.asList(2,30,39));
-        kropkiRules.add(Arrays.asList(2,31,32));
-        kropkiRules.add(Arrays.asList(2,32,41));
-        kropkiRules.add(Arrays.asList(2,35,44));
-        kropkiRules.add(Arrays.asList(2,44,53));
-        kropkiRules.add(Arrays.asList(2,38,47));
-        kropkiRules.add(Arrays.asList(2,47,56));
-        kropkiRules.add(Arrays.asList(2,61,62));
-        kropkiRules.add(Arrays.asList(2,65,66));
-        kropkiRules.add(Arrays.asList(2,69,78));
-        kropkiRules.add(Arrays.asList(2,76,77));
-        //rules.put("kropki", kropkiRules);
-        List<List<Integer>> grid13 = gridParser("000000000000000000000000000000000000000000000000000000000000000000000000000000000");
-
-        // sandwich and knight
-        List<List<Integer>> sandwichRules = new ArrayList<>();
-        sandwichRules.add(Arrays.asList(1,5));
-        sandwichRules.add(Arrays.asList(2,28));
-        sandwichRules.add(Arrays.asList(3,8));
-        sandwichRules.add(Arrays.asList(4,0));
-        sandwichRules.add(Arrays.asList(5,29));
-        sandwichRules.add(Arrays.asList(621));
-        sandwichRules.add(Arrays.asList(7,2));
-        sandwichRules.add(Arrays.asList(8,8));
-        sandwichRules.add(Arrays.asList(9,7));
-        sandwichRules.add(Arrays.asList(10,2));
-        sandwichRules.add(Arrays.asList(11,18));
-        sandwichRules.add(Arrays.asList(12,22));
-        sandwichRules.add(Arrays.asList(13,19));
-        sandwichRules.add(Arrays.asList(14,0));
-        sandwichRules.add(Arrays.asList(15,33));
-        sandwichRules.add(Arrays.asList(16,9));
-        sandwichRules.add(Arrays.asList(17,2));
-        sandwichRules.add(Arrays.asList(18,28));
-
-        //rules.put("sandwich", sandwichRules);
-        //rules.put("knight", null);
-        List<List<Integer>> grid14 = gridParser("000000000000000000000000000000000000000000000000000000000000000000010000000000000");
+    /**
+     * Generation of flat cells that a Sudoku can be built from without boxing. A grid is either
+     * one character per cell, '1'-'9' then 'A'-'P' for 10 to 25 and '0' or '.' for an empty cell,
+     * or numbers separated by spaces or commas, 0 for an empty cell; the number of cells gives
+     * the size of the grid
+     * @param grid a 16, 81, 256 or 625-cell grid
+     * @return A row-major array of the cells
+     */
+    public static int[] cellParser(String grid){
+        grid = grid.trim();
+        int[] cells;
+        if (grid.matches(".*[\\s,].*")){
+            String[] tokens = grid.split("[\\s,]+");
+            cells = new int[tokens.length];
+            for (int i=0; i<tokens.length; i++){
+                try {
+                    cells[i] = tokens[i].equals(".") ? 0 : Integer.parseInt(tokens[i]);
+                }
+                catch (NumberFormatException e){
+                    throw new IllegalArgumentException("Not a cell: " + tokens[i]);
+                }
+            }
+        }
+        else{
+            cells = new int[grid.length()];
+            for (int i=0; i<cells.length; i++){
+                char c = grid.charAt(i);
+                if (c == '.') cells[i] = 0;
+                else if (c >= '0' && c <= '9') cells[i] = c-'0';
+                else if (c >= 'A' && c <= 'Z') cells[i] = c-'A'+10;
+                else throw new IllegalArgumentException("Not a cell: '" + c + "'");
+            }
+        }
+        int size = Sudoku.sizeOf(cells.length);
+        for (int value : cells){
+            if (value < 0 || value > size) throw new IllegalArgumentException("Digits of a " + size + "x" + size + " grid are 1 to " + size + ": " + value);
+        }
+        return cells;
+    }
 
+    /**
+     * @param line a trimmed line of text
+     * @return true iff the line is one character per cell of a 4x4, 9x9, 16x16 or 25x25 grid
+     */
+    public static boolean isGridLine(String line){
+        if (!line.matches("[0-9A-Z.]+")) return false;
+        int size = (int) Math.round(Math.sqrt(line.length()));
+        return size*size == line.length() && (size == 4 || size == 9 || size == 16 || size == 25);
+    }
 
+    /**
+     * The one-character-per-cell form cellParser reads
+     * @param s the Sudoku
+     * @return its cells, '0' for an empty cell
+     */
+    public static String cellFormat(Sudoku s){
+        char[] line = new char[s.getCellCount()];
+        for (int i=0; i<line.length; i++){
+            int value = s.getCell(i);
+            line[i] = (char) (value < 10 ? '0'+value : 'A'+value-10);
+        }
+        return new String(line);
+    }
 
-        Sudoku sudoku = new Sudoku(grid, rules);
+    public static void main(String[] args){
+        // Examples of every supported rule are listed in Examples, grid uses normal rules
+        Examples.Example example = Examples.get(args.length > 0 ? args[0] : "grid");
+        if (example == null){
+            System.err.println("Unknown example, choose one of " + Examples.all() + " or " + Examples.hard());
+            return;
+        }
+        Sudoku sudoku = example.create();
         System.out.println(sudoku);
-        System.out.println(solver(sudoku));
+        // "stats" after the example name prints what the search did, "logic" also runs Deductions.ALL,
+        // "portfolio" races PortfolioSolver.DEFAULT and prints the winner
+        if (args.length > 1 && args[1].equals("stats")){
+            SolverStats stats = new SolverStats();
+            System.out.println(solver(sudoku, SearchStrategy.DEFAULT, stats));
+            System.out.print(stats);
+        }
+        else if (args.length > 1 && args[1].equals("logic")){
+            SolveResult result = solve(sudoku, SolveOptions.DEFAULT.withStrategy(SearchStrategy.DEFAULT)
+                    .withDeductions(Deductions.ALL).withStats(true));
+            System.out.println(result.getSolution());
+            System.out.print(result.getStats());
+        }
+        else if (args.length > 1 && args[1].equals("portfolio")){
+            try (PortfolioSolver portfolio = new PortfolioSolver()){
+                PortfolioSolver.Result result = portfolio.solve(sudoku);
+                System.out.println(result.getResult().getSolution());
+                System.out.println(result);
+            }
+        }
+        else{
+            System.out.println(solver(sudoku));
+        }
     }
 }
-
@@ -0,0 +1,17 @@
+/**
+ * A logical deduction over the houses of a Sudoku, one step of a Deductions pipeline
+ */
+public interface Technique {
+    /**
+     * @return the name the technique is counted under in SolverStats, e.g. "hidden singles"
+     */
+    String getName();
+
+    /**
+     * Apply the technique once over every house, removing candidates and placing digits through
+     * the Sudoku so the changes go on its trail
+     * @param s the Sudoku, fully propagated
+     * @return false iff the technique found that the Sudoku has no solution
+     */
+    boolean apply(Sudoku s);
+}
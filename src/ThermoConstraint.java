@@ -0,0 +1,47 @@
+/**
+ * Digits strictly increase from the bulb along the thermometer
+ */
+public class ThermoConstraint extends Constraint {
+    /**
+     * @param cells the thermometer cells, bulb first
+     */
+    public ThermoConstraint(int[] cells){
+        super(cells);
+    }
+
+    public String getRule(){
+        return "thermo";
+    }
+
+    public boolean isValid(Sudoku s){
+        // Each pair of consecutive placed digits needs room for the cells between them
+        int last = -1;
+        for (int i=0; i<myCells.length; i++){
+            int value = s.getCell(myCells[i]);
+            if (value == 0) continue;
+            if (last != -1 && value - s.getCell(myCells[last]) < i - last) return false;
+            last = i;
+        }
+        return true;
+    }
+
+    public boolean propagate(Sudoku s){
+        // Forward pass: each cell is above the smallest possible digit before it
+        int low = 0;
+        for (int cell : myCells){
+            int mask = s.getMask(cell) & Sudoku.range(low+1, s.getSize());
+            if (mask == 0) return false;
+            s.setMask(cell, mask);
+            low = Sudoku.lowestDigit(mask);
+        }
+        // Backward pass: each cell is below the largest possible digit after it
+        int high = s.getSize()+1;
+        for (int i=myCells.length-1; i>=0; i--){
+            int mask = s.getMask(myCells[i]) & Sudoku.range(1, high-1);
+            if (mask == 0) return false;
+            s.setMask(myCells[i], mask);
+            high = Sudoku.highestDigit(mask);
+        }
+        return true;
+    }
+}
@@ -0,0 +1,75 @@
+import java.util.*;
+
+/**
+ * Undo log of cell and candidate changes, so a search can return to an earlier state without
+ * copying it
+ */
+public final class Trail {
+    private int[] myIndices;
+    private int[] myOldCells;
+    private int[] myOldMasks;
+    private int mySize = 0;
+
+    /**
+     * A trail sized for a few changes per cell of the classic grid
+     */
+    public Trail(){
+        this(4*Sudoku.CELLS);
+    }
+
+    /**
+     * @param capacity the number of changes held before the trail grows
+     */
+    public Trail(int capacity){
+        capacity = Math.max(capacity, 1);
+        myIndices = new int[capacity];
+        myOldCells = new int[capacity];
+        myOldMasks = new int[capacity];
+    }
+
+    /**
+     * Record the state of a cell before it changes
+     * @param idx the cell index
+     * @param cell the digit in the cell before the change
+     * @param mask the candidate mask of the cell before the change
+     */
+    public void push(int idx, int cell, int mask){
+        if (mySize == myIndices.length){
+            myIndices = Arrays.copyOf(myIndices, mySize*2);
+            myOldCells = Arrays.copyOf(myOldCells, mySize*2);
+            myOldMasks = Arrays.copyOf(myOldMasks, mySize*2);
+        }
+        myIndices[mySize] = idx;
+        myOldCells[mySize] = cell;
+        myOldMasks[mySize] = mask;
+        mySize++;
+    }
+
+    /**
+     * @return the current position of the trail, to undo back to later
+     */
+    public int mark(){
+        return mySize;
+    }
+
+    /**
+     * Restore every change recorded after a mark, newest first
+     * @param mark a position returned by mark()
+     * @param cells the cells to restore
+     * @param masks the candidate masks to restore
+     */
+    public void undo(int mark, int[] cells, int[] masks){
+        while (mySize > mark){
+            mySize--;
+            cells[myIndices[mySize]] = myOldCells[mySize];
+            masks[myIndices[mySize]] = myOldMasks[mySize];
+        }
+    }
+
+    /**
+     * Forget every recorded change without restoring it
+     */
+    public void clear(){
+        mySize = 0;
+    }
+}
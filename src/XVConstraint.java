@@ -0,0 +1,76 @@
+import java.util.*;
+
+/**
+ * Two cells sum to 5 (V) or 10 (X)
+ */
+public class XVConstraint extends Constraint {
+    private final int mySum;
+
+    /**
+     * @param sum the sum of the two cells, 5 or 10
+     * @param one the first cell
+     * @param two the second cell
+     */
+    public XVConstraint(int sum, int one, int two){
+        super(new int[]{one, two});
+        if (sum != 5 && sum != 10) throw new IllegalArgumentException("XV sum must be 5 (V) or 10 (X): " + sum);
+        mySum = sum;
+    }
+
+    /**
+     * @return the sum of the two cells
+     */
+    public int getSum(){
+        return mySum;
+    }
+
+    public String getRule(){
+        return "xv";
+    }
+
+    public boolean isValid(Sudoku s){
+        int one = s.getCell(myCells[0]);
+        int two = s.getCell(myCells[1]);
+        return one == 0 || two == 0 || one + two == mySum;
+    }
+
+    public boolean propagate(Sudoku s){
+        // Each cell keeps only the complements of the other cell's candidates
+        int one = s.getMask(myCells[0]);
+        int two = s.getMask(myCells[1]) & complements(one);
+        if (two == 0) return false;
+        one &= complements(two);
+        if (one == 0) return false;
+        s.setMask(myCells[0], one);
+        s.setMask(myCells[1], two);
+        return true;
+    }
+
+    /**
+     * @param mask the candidates of one cell
+     * @return the digits that make up the sum with one of them, other than the digit itself
+     */
+    private int complements(int mask){
+        int complements = 0;
+        for (int m=mask; m!=0; m&=m-1){
+            int other = mySum-Sudoku.lowestDigit(m);
+            if (other >= 1 && other <= Sudoku.MAX_SIZE && other != mySum-other) complements |= Sudoku.bit(other);
+        }
+        return complements;
+    }
+
+    public void prune(Sudoku s){
+        // A digit stays only if some other digit of the grid makes up the sum with it
+        for (int value=1; value<=s.getSize(); value++){
+            int other = mySum-value;
+            if (other < 1 || other > s.getSize() || other == value){
+                s.removeCandidate(myCells[0], value);
+                s.removeCandidate(myCells[1], value);
+            }
+        }
+    }
+
+    public String toString(){
+        return getRule() + mySum + Arrays.toString(myCells);
+    }
+}
@@ -0,0 +1,74 @@
+/**
+ * X-wing over any houses: when a digit has exactly two places in each of two houses, and those
+ * four cells pair up across two other houses, the digit is removed from the rest of those two
+ */
+public final class XWing implements Technique {
+    public String getName(){
+        return "x-wing";
+    }
+
+    public boolean apply(Sudoku s){
+        ConstraintGraph graph = s.getConstraintGraph();
+        int[][] houses = graph.getHouses();
+        int size = s.getSize();
+        // For each digit, the places of every house where it has exactly two, the first cell in
+        // first[] and the second in second[], digit-major
+        int[] counts = new int[size+1];
+        int[] first = new int[(size+1)*houses.length];
+        int[] second = new int[(size+1)*houses.length];
+        int[] places = new int[size+1];
+        for (int[] house : houses){
+            Deductions.places(s, house, places);
+            for (int value=1; value<=size; value++){
+                int where = places[value];
+                if (Integer.bitCount(where) != 2) continue;
+                int slot = value*houses.length + counts[value]++;
+                first[slot] = house[Integer.numberOfTrailingZeros(where)];
+                second[slot] = house[31-Integer.numberOfLeadingZeros(where)];
+            }
+        }
+        for (int value=1; value<=size; value++){
+            int bit = Sudoku.bit(value);
+            int base = value*houses.length;
+            for (int i=base; i<base+counts[value]; i++){
+                for (int j=i+1; j<base+counts[value]; j++){
+                    int p1 = first[i], q1 = second[i], p2 = first[j], q2 = second[j];
+                    if (p1 == p2 || p1 == q2 || q1 == p2 || q1 == q2) continue;
+                    if (!eliminate(s, graph, bit, p1, p2, q1, q2) || !eliminate(s, graph, bit, p1, q2, q1, p2)) return false;
+                }
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Remove a digit from two houses, one holding a and b and the other c and d, outside those
+     * four cells; the digit is known to sit on a and d or on b and c
+     * @return false iff a cell lost its last candidate
+     */
+    private static boolean eliminate(Sudoku s, ConstraintGraph graph, int bit, int a, int b, int c, int d){
+        for (int h1 : graph.getHousesOf(a)){
+            if (!Intersections.contains(graph.getHousesOf(b), h1)) continue;
+            for (int h2 : graph.getHousesOf(c)){
+                if (h2 == h1 || !Intersections.contains(graph.getHousesOf(d), h2)) continue;
+                if (!remove(s, graph.getHouses()[h1], bit, a, b) || !remove(s, graph.getHouses()[h2], bit, c, d)) return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Remove a digit from every cell of a house but two
+     * @return false iff a cell lost its last candidate
+     */
+    private static boolean remove(Sudoku s, int[] house, int bit, int keep1, int keep2){
+        for (int cell : house){
+            if (cell == keep1 || cell == keep2) continue;
+            int mask = s.getMask(cell);
+            if ((mask & bit) == 0) continue;
+            if (mask == bit) return false;
+            s.setMask(cell, mask & ~bit);
+        }
+        return true;
+    }
+}